@@ -52,6 +52,8 @@ public class Main {
 
         log.info("Loading data...");
         dataManager.loadData();
+        dataManager.startFlusher();
+        Runtime.getRuntime().addShutdownHook(new Thread(dataManager::shutdown, "TobbQL-Shutdown"));
 
         log.info("Starting HTTP server...");
 
@@ -0,0 +1,30 @@
+package de.lunx.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class CharsetAdapter extends TypeAdapter<Charset> {
+
+    @Override
+    public void write(JsonWriter out, Charset value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(value.name());
+    }
+
+    @Override
+    public Charset read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return Charset.forName(in.nextString());
+    }
+}
@@ -1,6 +1,9 @@
 package de.lunx.data;
 
 import com.google.gson.Gson;
+import de.lunx.data.storage.Compression;
+import de.lunx.data.storage.Durability;
+import de.lunx.data.storage.StorageMode;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -17,6 +20,62 @@ public class Configuration {
 
     private boolean safeMode = true;
 
+    private Durability durability = Durability.SYNC;
+    private int syncIntervalMillis = 50;
+    /**
+     * How often the flusher checks whether a checkpoint is due, it does not write any tables by itself
+     */
+    private int checkpointCheckMillis = 1000;
+    /**
+     * The time after which changed tables are written by a checkpoint, until then their changes are only in the log
+     */
+    private int checkpointIntervalSeconds = 60;
+    /**
+     * The log size that forces a checkpoint before the checkpoint interval has passed
+     */
+    private int maxLogSizeMb = 64;
+    private int logSegmentSizeMb = 16;
+
+    private int loadThreads = 4;
+    private boolean lazyLoading = false;
+
+    private int tableMemoryBudgetMb = 0;
+    private int minResidencySeconds = 300;
+    private int residencyCheckSeconds = 30;
+
+    private Compression compression = Compression.NONE;
+
+    private StorageMode storageMode = StorageMode.HEAP;
+    private int pageSizeKb = 64;
+    private int pageCacheSize = 1024;
+
+    private int parallelScanThreshold = 50_000;
+    /**
+     * The number of threads scanning large tables, {@code 0} for one per core
+     */
+    private int scanParallelism = 0;
+
+    /**
+     * The number of rows appended and committed together by the bulk-load endpoint
+     */
+    private int bulkLoadBatchSize = 10_000;
+    /**
+     * The number of threads running the queries of parallel batches, {@code 0} for one per core
+     */
+    private int batchParallelism = 0;
+    /**
+     * The number of prepared queries kept, the least recently used ones are dropped first
+     */
+    private int preparedQueryCacheSize = 1000;
+    /**
+     * The combined size of the cached results of read queries, {@code 0} to disable the cache
+     */
+    private int resultCacheSizeMb = 64;
+    /**
+     * The size up to which results are cached
+     */
+    private int resultCacheMaxEntryKb = 1024;
+
 
     private final String WARNING = "DON'T CHANGE THESE VALUES UNLESS YOU KNOW WHAT YOU ARE DOING!!!";
     private String jwtSecret = "";
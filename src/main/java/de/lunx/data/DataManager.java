@@ -6,18 +6,36 @@ import com.google.gson.reflect.TypeToken;
 import de.lunx.Main;
 import de.lunx.auth.User;
 import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TRow;
 import de.lunx.data.obj.TTable;
+import de.lunx.data.storage.AtomicFile;
+import de.lunx.data.storage.Checkpoint;
+import de.lunx.data.storage.ColumnarRowList;
+import de.lunx.data.storage.CommitFlusher;
+import de.lunx.data.storage.Compression;
+import de.lunx.data.storage.DirectorySync;
+import de.lunx.data.storage.Durability;
+import de.lunx.data.storage.LegacyTableConverter;
+import de.lunx.data.storage.PageCache;
+import de.lunx.data.storage.PagedRowList;
+import de.lunx.data.storage.ResidencyManager;
+import de.lunx.data.storage.ScanPool;
+import de.lunx.data.storage.StorageMode;
+import de.lunx.data.storage.TableFormat;
+import de.lunx.data.storage.WalRecord;
+import de.lunx.data.storage.WriteAheadLog;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
 
+import static de.lunx.Main.printStackTrace;
 import static de.lunx.Main.printStackTraceLevel;
 
 @Slf4j
@@ -29,18 +47,31 @@ public class DataManager {
     private final File configFile;
     private final File tablesFolder;
     private final File dataBaseFolder;
+    private final File logsFolder;
+    private final File pagesFolder;
 
     @Getter
     private Configuration configuration = new Configuration();
 
     @Getter
-    private final List<TDatabase> databases = new ArrayList<>();
+    private final List<TDatabase> databases = new CopyOnWriteArrayList<>();
+
+    private final Map<String, WriteAheadLog> logs = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastCheckpoints = new ConcurrentHashMap<>();
+    private final CommitFlusher flusher = new CommitFlusher(this);
+    @Getter
+    private final ResidencyManager residencyManager = new ResidencyManager(this);
+    @Getter
+    private final ScanPool scanPool = new ScanPool(this);
+    private PageCache pageCache;
 
     private DataManager(File baseDirectory) {
         if (!baseDirectory.exists()) if (baseDirectory.mkdirs()) log.debug("Created base data directory.");
         configFile = new File(baseDirectory.getParent(), "config.json");
         tablesFolder = new File(baseDirectory, "tables");
         dataBaseFolder = new File(baseDirectory, "databases");
+        logsFolder = new File(baseDirectory, "logs");
+        pagesFolder = new File(baseDirectory, "pages");
     }
 
     public static DataManager create(File file) {
@@ -51,27 +82,95 @@ public class DataManager {
     }
 
 
+    /**
+     * Reads all databases and their tables. Tables are loaded in parallel on a pool of
+     * {@link Configuration#getLoadThreads()} threads. With {@link Configuration#isLazyLoading()},
+     * only the schema of each table is read here and its rows are loaded on first access.
+     */
     public void loadData() {
-        File[] databases = dataBaseFolder.listFiles();
-        if (databases == null) return;
-        for (File f : databases) {
-            try {
-                TDatabase database = EncryptUtil.loadObject(f.getPath(), TDatabase.class);
-                if (database == null) {
-                    log.error("Database not found.");
-                    return;
+        deleteIncompleteFiles();
+        deleteStalePages();
+        File[] databaseFiles = dataBaseFolder.listFiles();
+        if (databaseFiles == null) return;
+        long start = System.currentTimeMillis();
+        boolean lazy = configuration.isLazyLoading();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, configuration.getLoadThreads()), r -> {
+            Thread thread = new Thread(r, "TobbQL-Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<TDatabase, List<Future<TTable>>> loading = new LinkedHashMap<>();
+            for (File f : databaseFiles) {
+                try {
+                    TDatabase database = EncryptUtil.loadObject(f.getPath(), TDatabase.class);
+                    if (database == null) {
+                        log.error("Database not found.");
+                        continue;
+                    }
+
+                    // ######### LOAD TABLES ##########
+
+                    List<Future<TTable>> tables = new ArrayList<>();
+                    for (UUID u : database.getTablesRaw()) {
+                        tables.add(pool.submit(() -> loadTable(u, !lazy)));
+                    }
+                    loading.put(database, tables);
+                } catch (NoSuchFileException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                }
+            }
+
+            for (Map.Entry<TDatabase, List<Future<TTable>>> entry : loading.entrySet()) {
+                TDatabase database = entry.getKey();
+                for (Future<TTable> future : entry.getValue()) {
+                    try {
+                        TTable table = future.get();
+                        if (table != null) database.registerTTable(table);
+                    } catch (ExecutionException e) {
+                        printStackTrace(log, e);
+                    }
                 }
                 this.databases.add(database);
+                replayLog(database);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+        log.info("Loaded {} databases in {} ms{}", databases.size(), System.currentTimeMillis() - start,
+                lazy ? ", tables are loaded on first access" : "");
+    }
 
-                // ######### LOAD TABLES ##########
+    /**
+     * Starts the background flusher which syncs the logs and writes dirty tables.
+     */
+    public void startFlusher() {
+        flusher.start(configuration);
+    }
 
-                for (UUID u : database.getTablesRaw()) {
-                    File tableStoreFile = new File(tablesFolder, u.toString() + ".tbb");
-                    TTable table = EncryptUtil.loadObject(tableStoreFile.getPath(), TTable.class);
-                    database.registerTTable(table);
+    /**
+     * Stops the background flusher and persists everything that is still pending.
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        scanPool.shutdown();
+        for (WriteAheadLog wal : logs.values()) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                printStackTrace(log, e);
+            }
+        }
+        for (TDatabase b : databases) {
+            for (TTable t : b.getTables()) {
+                try {
+                    t.closeStorage();
+                } catch (IOException e) {
+                    printStackTrace(log, e);
                 }
-            } catch (NoSuchFileException ex) {
-                printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
             }
         }
     }
@@ -82,12 +181,236 @@ public class DataManager {
         }
     }
 
+    /**
+     * Writes a checkpoint of a database: the database file, the files of all tables that changed
+     * since they were saved last and the log position they cover. Log segments before that position
+     * are deleted afterwards.
+     * @param b The database to save
+     */
     public void save(TDatabase b) {
-        EncryptUtil.saveObject(dataBaseFolder, b.getName() + ".tdb", b);
+        synchronized (b) {
+            WriteAheadLog wal = getLog(b);
+            long segment;
+            try {
+                segment = wal.startSegment();
+            } catch (IOException e) {
+                printStackTrace(log, e);
+                segment = 0;
+            }
+            DirectorySync directorySync = new DirectorySync();
+            boolean saved = EncryptUtil.saveObject(dataBaseFolder, b.getName() + ".tdb", b, directorySync);
+
+            // ### SAVE TABLES ###
+            Compression compression = b.getCompression() != null ? b.getCompression() : configuration.getCompression();
+            Map<UUID, Long> versions = new HashMap<>();
+            for (TTable t : b.getTables()) {
+                synchronized (t) {
+                    if (t.isDirty()) {
+                        if (saveTable(t, compression, directorySync)) t.markSaved(t.getVersion());
+                        else saved = false;
+                    }
+                    versions.put(t.getUniqueID(), t.getSavedVersion());
+                }
+            }
+            lastCheckpoints.put(b.getName(), System.currentTimeMillis());
+            // The renames of all files written above become durable with one sync per directory
+            try {
+                directorySync.syncAll();
+            } catch (IOException e) {
+                printStackTrace(log, e);
+                saved = false;
+            }
+            // Only drop the logged changes once every snapshot containing them is on disk
+            if (!saved || segment == 0) return;
+            if (EncryptUtil.saveObject(logsFolder, b.getName() + ".ckpt",
+                    new Checkpoint(segment, System.currentTimeMillis(), versions))) {
+                wal.deleteSegmentsBefore(segment);
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint of every database whose checkpoint interval has passed while it has
+     * unsaved changes, or whose log grew beyond {@link Configuration#getMaxLogSizeMb()}.
+     */
+    public void checkpointIfDue() {
+        long now = System.currentTimeMillis();
+        long interval = configuration.getCheckpointIntervalSeconds() * 1000L;
+        long maxLogSize = configuration.getMaxLogSizeMb() * 1024L * 1024L;
+        for (TDatabase b : databases) {
+            long last = lastCheckpoints.getOrDefault(b.getName(), 0L);
+            if ((b.hasDirtyTables() && now - last >= interval) || getLog(b).size() >= maxLogSize) save(b);
+        }
+    }
+
+    /**
+     * Loads a table file.
+     * @param uniqueID The unique id of the table
+     * @param withRows Whether to read the rows, or only the schema
+     * @return The table, or {@code null} if it could not be loaded
+     */
+    @Nullable
+    private TTable loadTable(UUID uniqueID, boolean withRows) {
+        long start = System.nanoTime();
+        File tableStoreFile = new File(tablesFolder, uniqueID + ".tbb");
+        try (DataInputStream in = new DataInputStream(EncryptUtil.openDecrypted(tableStoreFile.getPath()))) {
+            in.mark(4);
+            boolean binary = in.readInt() == TableFormat.MAGIC;
+            in.reset();
+            TTable table;
+            if (binary) {
+                table = TableFormat.readHeader(in, this::createStorage);
+                if (withRows) TableFormat.readRows(in, table);
+                else table.setResident(false);
+                table.markSaved(table.getVersion());
+            } else {
+                // Tables written before the binary format are rewritten with the next flush
+                table = LegacyTableConverter.convert(new InputStreamReader(in, StandardCharsets.UTF_8));
+                table.useStorage(createStorage(table.getUniqueID()));
+                table.markDirty();
+                log.info("Converting table {} to the binary table format", table.getName());
+            }
+            if (table.isResident()) {
+                log.info("Loaded table {}.{} ({} rows) in {} ms", table.getDataBase(), table.getName(),
+                        table.getData().size(), (System.nanoTime() - start) / 1_000_000);
+            } else {
+                log.debug("Read schema of table {}.{} in {} ms", table.getDataBase(), table.getName(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            return table;
+        } catch (NoSuchFileException ex) {
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+        } catch (Exception ex) {
+            log.error("Could not load table {}", uniqueID);
+            printStackTrace(log, ex);
+        }
+        return null;
+    }
+
+    /**
+     * Makes sure the rows of a table are loaded, loading them from its file if necessary.
+     * @param table The table
+     * @return {@code false} if the rows could not be loaded
+     */
+    public boolean ensureResident(TTable table) {
+        if (table.isResident()) return true;
+        synchronized (table) {
+            if (table.isResident()) return true;
+            long start = System.nanoTime();
+            File tableStoreFile = new File(tablesFolder, table.getUniqueID() + ".tbb");
+            try (DataInputStream in = new DataInputStream(EncryptUtil.openDecrypted(tableStoreFile.getPath()))) {
+                TableFormat.readHeader(in, id -> List.of());
+                table.truncate();
+                TableFormat.readRows(in, table);
+                table.setResident(true);
+                log.info("Loaded table {}.{} ({} rows) in {} ms", table.getDataBase(), table.getName(),
+                        table.getData().size(), (System.nanoTime() - start) / 1_000_000);
+                return true;
+            } catch (IOException e) {
+                table.truncate();
+                log.error("Could not load rows of table {}", table.getName());
+                printStackTrace(log, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Loads the rows of a table if necessary and keeps them loaded while a query uses them.
+     * Every successful call must be followed by {@link TTable#release()}.
+     * @return {@code false} if the rows could not be loaded, the table is not retained then
+     */
+    public boolean acquire(TTable table) {
+        // Retained under the lock, so an unload either sees the table in use or completes before it is loaded again
+        synchronized (table) {
+            table.retain();
+            if (!ensureResident(table)) {
+                table.release();
+                return false;
+            }
+        }
+        table.touch();
+        return true;
+    }
+
+    /**
+     * Flushes a table if needed and releases its rows. The table is loaded again by
+     * {@link TDatabase#getTable(String)} the next time it is accessed. Tables used by a query are not unloaded.
+     * @param table The table to unload
+     * @return {@code true} if the table has been unloaded
+     */
+    public boolean unload(TTable table) {
+        TDatabase db = getDatabase(table.getDataBase());
+        if (db == null) return false;
+        if (table.isDirty()) save(db);
+        synchronized (table) {
+            if (!table.isResident() || table.isDirty() || table.isInUse()) return false;
+            table.truncate();
+            table.setResident(false);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the list the rows of a table are kept in, according to the configured {@link StorageMode}.
+     * @param table The unique id of the table
+     */
+    private List<Object[]> createStorage(UUID table) {
+        if (configuration.getStorageMode() == StorageMode.COLUMNAR) return new ColumnarRowList();
+        if (configuration.getStorageMode() != StorageMode.PAGED) return new ArrayList<>();
+        try {
+            return new PagedRowList(new File(pagesFolder, table + ".pages"),
+                    configuration.getPageSizeKb() * 1024, getPageCache());
+        } catch (IOException e) {
+            log.error("Could not create paged storage for table {}, keeping it on the heap", table);
+            printStackTrace(log, e);
+            return new ArrayList<>();
+        }
+    }
+
+    public synchronized PageCache getPageCache() {
+        if (pageCache == null) pageCache = new PageCache(configuration.getPageCacheSize());
+        return pageCache;
+    }
+
+    /**
+     * Removes temporary files of writes that were interrupted before they replaced their target.
+     */
+    private void deleteIncompleteFiles() {
+        AtomicFile.deleteStale(dataBaseFolder);
+        AtomicFile.deleteStale(tablesFolder);
+        AtomicFile.deleteStale(logsFolder);
+    }
+
+    private boolean usesConfiguredStorage(TTable table) {
+        return switch (configuration.getStorageMode()) {
+            case HEAP -> table.getData() instanceof ArrayList;
+            case PAGED -> table.getData() instanceof PagedRowList;
+            case COLUMNAR -> table.getData() instanceof ColumnarRowList;
+        };
+    }
+
+    private void deleteStalePages() {
+        if (pagesFolder.mkdirs()) log.debug("Created pages directory.");
+        File[] files = pagesFolder.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (!f.delete()) log.warn("Could not delete stale page file {}", f.getName());
+        }
+    }
 
-        // ### SAVE TABLES ###
-        for (TTable t : b.getTables()) {
-            EncryptUtil.saveObject(tablesFolder, t.getUniqueID() + ".tbb", t);
+    private boolean saveTable(TTable table, Compression compression, DirectorySync directorySync) {
+        try {
+            EncryptUtil.writeEncrypted(tablesFolder, table.getUniqueID() + ".tbb", compression, directorySync, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                TableFormat.write(table, data);
+                data.flush();
+            });
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to save table {}", table.getName());
+            printStackTrace(log, e);
+            return false;
         }
     }
 
@@ -97,9 +420,232 @@ public class DataManager {
         if (!db.hasTable(table.getName())) {
             db.registerOrUpdateTTable(table);
         }
+        if (!usesConfiguredStorage(table)) {
+            try {
+                table.useStorage(createStorage(table.getUniqueID()));
+            } catch (IOException e) {
+                printStackTrace(log, e);
+            }
+        }
+        synchronized (table) {
+            table.markDirty();
+        }
         save(db);
     }
 
+    /**
+     * Writes the tables of all databases that changed since they were saved last.
+     */
+    public void saveDirty() {
+        for (TDatabase b : databases) {
+            if (b.hasDirtyTables()) save(b);
+        }
+    }
+
+    /**
+     * Forces the logs of all databases to disk.
+     */
+    public void syncLogs() {
+        for (WriteAheadLog wal : logs.values()) {
+            try {
+                wal.sync();
+            } catch (IOException e) {
+                printStackTrace(log, e);
+            }
+        }
+    }
+
+    /**
+     * Waits until logged changes are durable according to the configured {@link Durability}.
+     * Call this after releasing the table lock, so concurrent queries can share one sync.
+     * @param database The database the changes were logged for
+     * @param position The position returned by {@link #logChange(TTable, WalRecord.Operation, int, Map)}
+     * @throws UncheckedIOException If the log could not be synced with {@link Durability#SYNC}
+     */
+    public void commit(TDatabase database, long position) throws UncheckedIOException {
+        if (position <= 0 || configuration.getDurability() != Durability.SYNC) return;
+        try {
+            getLog(database).sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync log of database " + database.getName(), e);
+        }
+    }
+
+
+    /**
+     * Persists a single row change of a table by appending it to the database's write-ahead log.
+     * Must be called while holding the lock of the table, before the change is applied.
+     * @param table The changed table
+     * @param operation The kind of change
+     * @param row The index of the changed row, {@code -1} for changes not bound to a row
+     * @param data The row after the change, {@code null} for deletions and truncations
+     * @return The log position to pass to {@link #commit(TDatabase, long)}
+     * @throws UncheckedIOException If the record could not be written, unless the durability is {@link Durability#OS}
+     */
+    public long logChange(TTable table, WalRecord.Operation operation, int row, Map<String, Object> data) throws UncheckedIOException {
+        // Changes to a table that has been unloaded meanwhile must not be persisted, as its rows are missing
+        if (!table.isResident()) throw new IllegalStateException("Table " + table.getName() + " has been unloaded");
+        TDatabase db = getDatabase(table.getDataBase());
+        if (db == null) return 0;
+        try {
+            return getLog(db).append(new WalRecord(operation, table.getUniqueID(), table.nextVersion(), row, data));
+        } catch (IOException e) {
+            return logFailed(table, e);
+        }
+    }
+
+    /**
+     * Persists rows appended to a table with a single write to the write-ahead log, see {@link #logChange}.
+     * @param first The index the first row is appended at
+     * @param rows The rows to append in the layout of the table
+     * @return The log position to pass to {@link #commit(TDatabase, long)}
+     * @throws UncheckedIOException If the records could not be written, unless the durability is {@link Durability#OS}
+     */
+    public long logInserts(TTable table, int first, List<Object[]> rows) throws UncheckedIOException {
+        int[] positions = new int[rows.size()];
+        for (int i = 0; i < positions.length; i++) positions[i] = first + i;
+        return logRows(table, WalRecord.Operation.INSERT, positions, rows);
+    }
+
+    /**
+     * Persists changed rows of a table with a single write to the write-ahead log, see {@link #logChange}.
+     * @param positions The index of every changed row
+     * @param rows The rows after the change in the layout of the table
+     * @return The log position to pass to {@link #commit(TDatabase, long)}
+     * @throws UncheckedIOException If the records could not be written, unless the durability is {@link Durability#OS}
+     */
+    public long logUpdates(TTable table, int[] positions, List<Object[]> rows) throws UncheckedIOException {
+        return logRows(table, WalRecord.Operation.UPDATE, positions, rows);
+    }
+
+    private long logRows(TTable table, WalRecord.Operation operation, int[] positions, List<Object[]> rows) throws UncheckedIOException {
+        if (!table.isResident()) throw new IllegalStateException("Table " + table.getName() + " has been unloaded");
+        TDatabase db = getDatabase(table.getDataBase());
+        if (db == null || rows.isEmpty()) return 0;
+        List<WalRecord> records = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            records.add(new WalRecord(operation, table.getUniqueID(), table.nextVersion(), positions[i], new TRow(table, rows.get(i))));
+        }
+        try {
+            return getLog(db).append(records);
+        } catch (IOException e) {
+            return logFailed(table, e);
+        }
+    }
+
+    /**
+     * Fails the change of a table whose log records could not be written. Only without durability guarantees
+     * the change is accepted, as it is still persisted by the next flush of the table.
+     */
+    private long logFailed(TTable table, IOException e) throws UncheckedIOException {
+        if (configuration.getDurability() != Durability.OS) {
+            throw new UncheckedIOException("Failed to write log records for table " + table.getName(), e);
+        }
+        log.error("Failed to write log records for table {}, the table will be saved with the next flush", table.getName());
+        printStackTrace(log, e);
+        return 0;
+    }
+
+    private WriteAheadLog getLog(TDatabase db) {
+        return logs.computeIfAbsent(db.getName(), name -> {
+            try {
+                return new WriteAheadLog(logsFolder, name, configuration.getLogSegmentSizeMb() * 1024L * 1024L);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void replayLog(TDatabase database) {
+        try {
+            Checkpoint checkpoint = loadCheckpoint(database);
+            lastCheckpoints.put(database.getName(), System.currentTimeMillis());
+            long from = 0;
+            if (checkpoint != null) {
+                from = checkpoint.segment();
+                checkSnapshots(database, checkpoint);
+            }
+            DeleteRun deletes = new DeleteRun();
+            int records = getLog(database).replay(from, record -> applyLogRecord(database, record, deletes));
+            deletes.apply();
+            if (records == 0) return;
+            log.info("Replayed {} log records of database {}", records, database.getName());
+            save(database);
+        } catch (IOException e) {
+            log.error("Failed to replay log of database {}", database.getName());
+            printStackTrace(log, e);
+        }
+    }
+
+    @Nullable
+    private Checkpoint loadCheckpoint(TDatabase database) {
+        try {
+            return EncryptUtil.loadObject(new File(logsFolder, database.getName() + ".ckpt").getPath(), Checkpoint.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Warns about tables whose file is older than the checkpoint, their newer changes are not in the log anymore.
+     */
+    private void checkSnapshots(TDatabase database, Checkpoint checkpoint) {
+        if (checkpoint.versions() == null) return;
+        for (TTable table : database.getTables()) {
+            Long version = checkpoint.versions().get(table.getUniqueID());
+            if (version != null && table.getVersion() < version) {
+                log.warn("Table {}.{} is at version {}, but was checkpointed at version {}", database.getName(),
+                        table.getName(), table.getVersion(), version);
+            }
+        }
+    }
+
+    private void applyLogRecord(TDatabase database, WalRecord record, DeleteRun deletes) {
+        TTable table = database.getTable(record.table());
+        // Changes that are already part of the loaded snapshot are skipped
+        if (table == null || record.version() <= table.getVersion()) return;
+        if (record.operation() == WalRecord.Operation.DELETE) {
+            deletes.add(table, record);
+            return;
+        }
+        deletes.apply();
+
+        switch (record.operation()) {
+            case INSERT -> table.addRow(table.toValues(record.data()));
+            case UPDATE -> {
+                if (record.row() < table.getRowCount()) table.setRow(record.row(), table.toValues(record.data()));
+            }
+            case TRUNCATE -> table.truncate();
+        }
+        table.setVersion(record.version());
+    }
+
+    /**
+     * Consecutive deletions of rows of one table found while replaying a log. They are applied together,
+     * as every removal moves all rows behind it.
+     */
+    private static final class DeleteRun {
+        private TTable table;
+        private int[] rows = new int[16];
+        private int count;
+        private long version;
+
+        void add(TTable table, WalRecord record) {
+            if (table != this.table) apply();
+            this.table = table;
+            if (count == rows.length) rows = Arrays.copyOf(rows, count * 2);
+            rows[count++] = record.row();
+            version = record.version();
+        }
+
+        void apply() {
+            if (table == null) return;
+            table.deleteRows(Arrays.copyOf(rows, count));
+            table.setVersion(version);
+            table = null;
+            count = 0;
+        }
+    }
 
     public TDatabase createDatabase(String name) {
         TDatabase db = new TDatabase(name, StandardCharsets.UTF_8);
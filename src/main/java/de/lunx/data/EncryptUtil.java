@@ -1,24 +1,37 @@
 package de.lunx.data;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import de.lunx.Main;
+import de.lunx.data.storage.AtomicFile;
+import de.lunx.data.storage.ChunkedCipherInputStream;
+import de.lunx.data.storage.ChunkedCipherOutputStream;
+import de.lunx.data.storage.Compression;
+import de.lunx.data.storage.DirectorySync;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 @Slf4j
 public class EncryptUtil {
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(Charset.class, new CharsetAdapter())
+            .create();
     private static final String secret = Main.getInstance().getDataSecret();
+    private static volatile SecretKey streamKey;
 
     /**
      * Loads a JSON file from the specified file path and deserializes it into the specified type.
@@ -45,12 +58,8 @@ public class EncryptUtil {
         if (!new File(path).exists()) {
             throw new NoSuchFileException(path);
         }
-        try {
-            byte[] encryptedData = loadEncryptedData(path);
-            byte[] key = secret.getBytes();
-            byte[] iv = secret.getBytes();
-            String decryptedData = decrypt(encryptedData, key, iv);
-            return GSON.fromJson(decryptedData, type);
+        try (Reader reader = new InputStreamReader(openDecrypted(path), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(new JsonReader(reader), type);
         } catch (Exception e) {
             log.error("Could not parse file. Maybe it's not encrypted?");
             log.error(e.getMessage());
@@ -62,74 +71,156 @@ public class EncryptUtil {
     /**
      * Saves the given object as a JSON file at the specified path.
      *
-     * <p>If encryption is enabled, the method encrypts the JSON content before writing it to the file.</p>
+     * <p>If encryption is enabled, the method encrypts the JSON content before writing it to the file.
+     * The JSON is streamed into the cipher, so the document is never held in memory as a whole.
+     * The previous version of the file is replaced atomically once the new one is complete.</p>
      *
      * @param directory The directory where the JSON file should be saved.
      *                  If the directory does not exist, it will be created.
      * @param fileName  The name of the JSON file (without the path).
+     * @return {@code true} if the file has been written completely.
      * @throws NullPointerException if {@code directory} or {@code fileName} is {@code null}.
      */
-    public static void saveObject(File directory, String fileName, Object o) {
-        if (directory.mkdirs()) {
+    public static boolean saveObject(File directory, String fileName, Object o) {
+        return saveObject(directory, fileName, o, null);
+    }
 
-            log.info("Creating data folders...");
-        }
+    /**
+     * Saves the given object as a JSON file at the specified path.
+     *
+     * @param directorySync Collects the directory, so it can be synced together with other files.
+     *                      If {@code null}, the directory is synced right away.
+     * @see #saveObject(File, String, Object)
+     */
+    public static boolean saveObject(File directory, String fileName, Object o, @Nullable DirectorySync directorySync) {
         try {
-            byte[] encryptedData = encrypt(GSON.toJson(o), secret.getBytes(), secret.getBytes());
-            try (FileOutputStream fos = new FileOutputStream(new File(directory, fileName))) {
-                fos.write(encryptedData);
-            }
+            writeEncrypted(directory, fileName, Compression.NONE, directorySync, out -> {
+                JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                GSON.toJson(o, o.getClass(), writer);
+                writer.close();
+            });
+            return true;
         } catch (Exception e) {
             log.error("Failed to save encrypted data:");
             log.error(e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Decrypts the given encrypted data using AES.
+     * Encrypts everything written by {@code content} into the specified file.
      *
-     * @param encryptedData The encrypted data as a byte array.
-     * @param key           The AES key as a byte array.
-     * @param iv            The initialization vector as a byte array.
-     * @return The decrypted data as a {@link String}.
-     * @throws Exception If decryption fails.
+     * <p>The content is compressed and encrypted in independently authenticated chunks, see
+     * {@link ChunkedCipherOutputStream}. It is written to a temporary file which replaces the
+     * target atomically once it is complete, see {@link AtomicFile}. If writing fails, the
+     * previous version of the file is kept.</p>
+     *
+     * @param directory     The directory where the file should be saved.
+     *                      If the directory does not exist, it will be created.
+     * @param fileName      The name of the file (without the path).
+     * @param compression   The codec every chunk is compressed with before it is encrypted.
+     * @param directorySync Collects the directory, so it can be synced together with other files.
+     *                      If {@code null}, the directory is synced right away.
+     * @param content       Writes the plain content to the given stream.
+     * @throws IOException If the file cannot be written.
      */
-    private static String decrypt(byte[] encryptedData, byte[] key, byte[] iv) throws Exception {
-        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
-        cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
-        byte[] decryptedBytes = cipher.doFinal(encryptedData);
-        return new String(decryptedBytes);
+    public static void writeEncrypted(File directory, String fileName, Compression compression,
+                                      @Nullable DirectorySync directorySync, ContentWriter content) throws IOException {
+        if (directory.mkdirs()) {
+            log.info("Creating data folders...");
+        }
+        try (AtomicFile file = new AtomicFile(new File(directory, fileName), directorySync)) {
+            OutputStream out = new BufferedOutputStream(new ChunkedCipherOutputStream(file.stream(), streamKey(), compression));
+            content.write(out);
+            // Only a completely written stream gets its final chunk and replaces the file
+            out.close();
+            file.commit();
+        }
+    }
+
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
     }
 
     /**
-     * Encrypts the given data using AES.
+     * Opens a stream that decrypts the specified file while it is read.
      *
-     * @param data The data to encrypt as a {@link String}.
-     * @param key  The AES key as a byte array.
-     * @param iv   The initialization vector as a byte array.
-     * @return The encrypted data as a byte array.
-     * @throws Exception If encryption fails.
+     * <p>Files written before chunked encryption was introduced are decrypted as a whole.</p>
+     *
+     * @param path The file path of the file to be loaded.
+     * @return A buffered stream returning the plain content.
+     * @throws NoSuchFileException if the specified file does not exist.
+     * @throws IOException If the file cannot be read or decrypted.
      */
-    private static byte[] encrypt(String data, byte[] key, byte[] iv) throws Exception {
-        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
-        cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-        return cipher.doFinal(data.getBytes());
+    public static InputStream openDecrypted(String path) throws IOException {
+        if (!new File(path).exists()) {
+            throw new NoSuchFileException(path);
+        }
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(path));
+        in.mark(4);
+        int magic = new DataInputStream(in).readInt();
+        in.reset();
+        if (magic == ChunkedCipherOutputStream.MAGIC || magic == ChunkedCipherOutputStream.MAGIC_UNCOMPRESSED) {
+            return new BufferedInputStream(new ChunkedCipherInputStream(in, streamKey()));
+        }
+        try (in) {
+            return new ByteArrayInputStream(decryptBytes(in.readAllBytes()));
+        }
     }
 
     /**
-     * Loads encrypted data from a file.
+     * Encrypts a raw byte array with the data secret.
      *
-     * @param filePath The path to the file containing the encrypted data.
-     * @return The encrypted data as a byte array.
-     * @throws IOException If reading the file fails.
+     * @param data The plain bytes.
+     * @return The encrypted bytes.
+     * @throws IOException If encryption fails.
      */
-    private static byte[] loadEncryptedData(String filePath) throws IOException {
-        try (FileInputStream fis = new FileInputStream(filePath)) {
-            return fis.readAllBytes();
+    public static byte[] encryptBytes(byte[] data) throws IOException {
+        try {
+            return cipher(Cipher.ENCRYPT_MODE, secret.getBytes(), secret.getBytes()).doFinal(data);
+        } catch (Exception e) {
+            throw new IOException("Could not encrypt data", e);
+        }
+    }
+
+    /**
+     * Decrypts a raw byte array that has been encrypted with {@link #encryptBytes(byte[])}.
+     *
+     * @param data The encrypted bytes.
+     * @return The plain bytes.
+     * @throws IOException If decryption fails.
+     */
+    public static byte[] decryptBytes(byte[] data) throws IOException {
+        try {
+            return cipher(Cipher.DECRYPT_MODE, secret.getBytes(), secret.getBytes()).doFinal(data);
+        } catch (Exception e) {
+            throw new IOException("Could not decrypt data", e);
         }
     }
+
+    /**
+     * Derives the AES-256 key for chunked streams from the data secret.
+     *
+     * @return The key.
+     * @throws IOException If SHA-256 is not available.
+     */
+    private static SecretKey streamKey() throws IOException {
+        if (streamKey == null) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+                streamKey = new SecretKeySpec(hash, "AES");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("SHA-256 is not available", e);
+            }
+        }
+        return streamKey;
+    }
+
+    private static Cipher cipher(int mode, byte[] key, byte[] iv) throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+        cipher.init(mode, keySpec, ivSpec);
+        return cipher;
+    }
 }
@@ -0,0 +1,70 @@
+package de.lunx.data.index;
+
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.Values;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index answering equality conditions through a hash map from value to rows.
+ * Values are looked up by {@link Values#key(Object)}, so they match like {@link Values#equal(Object, Object)}.
+ */
+public class HashIndex implements TableIndex {
+    private static final int[] NONE = new int[0];
+    private final Map<Object, RowSet> rows = new HashMap<>();
+
+    @Override
+    public IndexType getType() {
+        return IndexType.HASH;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        rows.computeIfAbsent(Values.key(value), k -> new RowSet()).add(row);
+    }
+
+    @Override
+    public void delete(Object value, int row) {
+        Object key = Values.key(value);
+        RowSet set = rows.get(key);
+        if (set != null && set.remove(row) && set.isEmpty()) rows.remove(key);
+    }
+
+    @Override
+    public void shiftAfter(int[] removed) {
+        for (RowSet set : rows.values()) set.shiftAfter(removed);
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+    }
+
+    @Override
+    public int[] find(Object value) {
+        RowSet set = rows.get(Values.key(value));
+        return set == null ? NONE : set.toSortedArray();
+    }
+
+    @Override
+    public int[] lookup(QueryCondition condition) {
+        return switch (condition.getOperator()) {
+            case EQUALS -> find(condition.getValue());
+            case IN -> findAny(condition.getValues());
+            case IS_NULL -> find(null);
+            default -> null;
+        };
+    }
+
+    @Override
+    public boolean supports(QueryCondition.Operator operator) {
+        return operator == QueryCondition.Operator.EQUALS || operator == QueryCondition.Operator.IN
+                || operator == QueryCondition.Operator.IS_NULL;
+    }
+
+    @Override
+    public int distinctValues() {
+        return rows.size();
+    }
+}
@@ -0,0 +1,16 @@
+package de.lunx.data.index;
+
+/**
+ * The kind of secondary index kept for a column.
+ */
+public enum IndexType {
+    NONE,
+    /**
+     * Finds the rows holding a value in constant time.
+     */
+    HASH,
+    /**
+     * Keeps the values sorted, so it also answers range and prefix conditions and returns rows in order.
+     */
+    ORDERED
+}
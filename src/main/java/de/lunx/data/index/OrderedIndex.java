@@ -0,0 +1,147 @@
+package de.lunx.data.index;
+
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.Values;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Index keeping the values of a column sorted in a skip list, ordered by {@link Values#compare(Object, Object)}.
+ * Besides equality it answers range and prefix conditions and lists all rows in value order.
+ * Rows without a value are kept separately and are never matched by range conditions.
+ */
+public class OrderedIndex implements TableIndex {
+    private final ConcurrentSkipListMap<Object, RowSet> rows = new ConcurrentSkipListMap<>(Values::compare);
+    private final RowSet nulls = new RowSet();
+
+    @Override
+    public IndexType getType() {
+        return IndexType.ORDERED;
+    }
+
+    @Override
+    public void insert(Object value, int row) {
+        Object key = Values.key(value);
+        if (key == null) nulls.add(row);
+        else rows.computeIfAbsent(key, k -> new RowSet()).add(row);
+    }
+
+    @Override
+    public void delete(Object value, int row) {
+        Object key = Values.key(value);
+        if (key == null) {
+            nulls.remove(row);
+            return;
+        }
+        RowSet set = rows.get(key);
+        if (set != null && set.remove(row) && set.isEmpty()) rows.remove(key);
+    }
+
+    @Override
+    public void shiftAfter(int[] removed) {
+        for (RowSet set : rows.values()) set.shiftAfter(removed);
+        nulls.shiftAfter(removed);
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+        nulls.clear();
+    }
+
+    @Override
+    public int[] find(Object value) {
+        Object key = Values.key(value);
+        if (key == null) return nulls.toSortedArray();
+        RowSet set = rows.get(key);
+        return set == null ? new int[0] : set.toSortedArray();
+    }
+
+    @Override
+    public int[] lookup(QueryCondition condition) {
+        Object value = condition.getValue();
+        return switch (condition.getOperator()) {
+            case EQUALS -> find(value);
+            case IN -> findAny(condition.getValues());
+            case IS_NULL -> nulls.toSortedArray();
+            case NOT_EQUALS, IS_NOT_NULL -> null;
+            default -> value == null ? new int[0] : range(condition);
+        };
+    }
+
+    private int[] range(QueryCondition condition) {
+        Object value = condition.getValue();
+        return switch (condition.getOperator()) {
+            case LESS -> sorted(rows.headMap(Values.key(value), false).values());
+            case LESS_OR_EQUAL -> sorted(rows.headMap(Values.key(value), true).values());
+            case GREATER -> sorted(rows.tailMap(Values.key(value), false).values());
+            case GREATER_OR_EQUAL -> sorted(rows.tailMap(Values.key(value), true).values());
+            case BETWEEN -> {
+                Object from = Values.key(value);
+                Object to = Values.key(condition.getTo());
+                if (to == null || Values.compare(from, to) > 0) yield new int[0];
+                yield sorted(rows.subMap(from, true, to, true).values());
+            }
+            case PREFIX -> prefix(value.toString());
+            default -> null;
+        };
+    }
+
+    @Override
+    public boolean supports(QueryCondition.Operator operator) {
+        return operator != QueryCondition.Operator.NOT_EQUALS && operator != QueryCondition.Operator.IS_NOT_NULL;
+    }
+
+    /**
+     * Streams the rows ordered by their value. Rows with the same value are in ascending order.
+     * The rows are read from the skip list one value at a time, so the stream must be consumed while the table is locked.
+     * @param descending Whether the largest values come first
+     * @param from The value to start with, {@code null} to stream all rows
+     * @return The rows of the table, rows without a value first in ascending and last in descending order
+     */
+    public IntStream ordered(boolean descending, Object from) {
+        Object key = Values.key(from);
+        NavigableMap<Object, RowSet> map = descending ? rows.descendingMap() : rows;
+        if (key != null) map = map.tailMap(key, true);
+        IntStream values = map.values().stream().flatMapToInt(OrderedIndex::ascending);
+        IntStream none = Stream.of(nulls).flatMapToInt(OrderedIndex::ascending);
+        if (descending) return IntStream.concat(values, none);
+        // Rows without a value come before all others, so they precede any start value
+        return key == null ? IntStream.concat(none, values) : values;
+    }
+
+    @Override
+    public int distinctValues() {
+        return rows.size() + (nulls.isEmpty() ? 0 : 1);
+    }
+
+    private int[] prefix(String prefix) {
+        List<RowSet> matching = new ArrayList<>();
+        for (var entry : rows.tailMap(prefix, true).entrySet()) {
+            if (!(entry.getKey() instanceof String s) || !s.startsWith(prefix)) break;
+            matching.add(entry.getValue());
+        }
+        return sorted(matching);
+    }
+
+    private static int[] sorted(Collection<RowSet> sets) {
+        int size = 0;
+        for (RowSet set : sets) size += set.size();
+        int[] result = new int[size];
+        int position = 0;
+        for (RowSet set : sets) position = set.copyTo(result, position);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static IntStream ascending(RowSet set) {
+        return IntStream.of(set.toSortedArray());
+    }
+}
@@ -0,0 +1,60 @@
+package de.lunx.data.index;
+
+import java.util.Arrays;
+
+/**
+ * Small set of row positions, kept as an unsorted int array as most index keys only belong to a few rows.
+ */
+class RowSet {
+    private int[] rows = new int[1];
+    private int size;
+
+    void add(int row) {
+        if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+        rows[size++] = row;
+    }
+
+    boolean remove(int row) {
+        for (int i = 0; i < size; i++) {
+            if (rows[i] == row) {
+                rows[i] = rows[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param removed The positions of removed rows in ascending order, none of which is in this set
+     */
+    void shiftAfter(int[] removed) {
+        for (int i = 0; i < size; i++) rows[i] += Arrays.binarySearch(removed, rows[i]) + 1;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the rows into an array, starting at the given position.
+     * @return The position after the last copied row
+     */
+    int copyTo(int[] target, int position) {
+        System.arraycopy(rows, 0, target, position, size);
+        return position + size;
+    }
+
+    int[] toSortedArray() {
+        int[] sorted = Arrays.copyOf(rows, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
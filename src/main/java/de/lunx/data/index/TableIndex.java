@@ -0,0 +1,58 @@
+package de.lunx.data.index;
+
+import de.lunx.data.obj.QueryCondition;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Secondary index mapping the values of one column to the positions of the rows holding them.
+ * Indexes are maintained by their table while holding the table's lock.
+ */
+public interface TableIndex {
+    IndexType getType();
+
+    void insert(Object value, int row);
+
+    void delete(Object value, int row);
+
+    /**
+     * Moves all rows up by the number of removed rows before them, after those rows have been deleted from the index.
+     * This visits every indexed row, so rows removed together should be shifted with one call.
+     * @param removed The positions the removed rows had, in ascending order
+     */
+    void shiftAfter(int[] removed);
+
+    void clear();
+
+    /**
+     * @return The positions of all rows holding the value, in ascending order
+     */
+    int[] find(Object value);
+
+    /**
+     * @return The positions of all rows holding any of the values, in ascending order
+     */
+    default int[] findAny(List<?> values) {
+        if (values == null) return new int[0];
+        return values.stream().map(this::find).flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+    }
+
+    /**
+     * Finds the rows matching a condition on the indexed column.
+     * @return The positions of the rows in ascending order, or {@code null} if the index cannot answer the condition
+     */
+    @Nullable
+    int[] lookup(QueryCondition condition);
+
+    /**
+     * @return Whether {@link #lookup(QueryCondition)} answers conditions with the given operator
+     */
+    boolean supports(QueryCondition.Operator operator);
+
+    /**
+     * @return The number of distinct values in the index
+     */
+    int distinctValues();
+}
@@ -1,8 +1,13 @@
 package de.lunx.data.obj;
 
+import de.lunx.data.JsonDate;
 import lombok.Getter;
 
-import java.util.HashMap;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Getter
 public class QueryCondition {
@@ -10,16 +15,133 @@ public class QueryCondition {
 
     private String column;
     private Object value;
+    private Operator operator;
+    /**
+     * The upper bound of {@link Operator#BETWEEN}
+     */
+    private Object to;
+    /**
+     * The values of {@link Operator#IN}
+     */
+    private List<Object> values;
 
     public QueryCondition(TTable table) {
         this.table = table;
     }
 
-    public boolean check(HashMap<String, Object> row) {
-        TColumn c = table.getColumn(column);
-        if (c.validate(value)) {
-            return value.equals(row.getOrDefault(column, ""));
-        }
+    /**
+     * Copies this condition with other values, e.g. to bind the parameters of a prepared query.
+     */
+    public QueryCondition withValues(Object value, Object to, List<Object> values) {
+        QueryCondition copy = new QueryCondition(table);
+        copy.column = column;
+        copy.operator = operator;
+        copy.value = value;
+        copy.to = to;
+        copy.values = values;
+        return copy;
+    }
+
+    public Operator getOperator() {
+        return operator == null ? Operator.EQUALS : operator;
+    }
+
+    /**
+     * Checks a value of the condition's column. Missing values only match {@link Operator#EQUALS} with {@code null}
+     * and {@link Operator#IS_NULL}.
+     */
+    public boolean matches(Object stored) {
+        return switch (getOperator()) {
+            case EQUALS -> Values.equal(stored, value);
+            case NOT_EQUALS -> stored != null && !Values.equal(stored, value);
+            case LESS -> comparable(stored) && Values.compare(stored, value) < 0;
+            case LESS_OR_EQUAL -> comparable(stored) && Values.compare(stored, value) <= 0;
+            case GREATER -> comparable(stored) && Values.compare(stored, value) > 0;
+            case GREATER_OR_EQUAL -> comparable(stored) && Values.compare(stored, value) >= 0;
+            case BETWEEN -> comparable(stored) && to != null
+                    && Values.compare(stored, value) >= 0 && Values.compare(stored, to) <= 0;
+            case PREFIX -> comparable(stored) && stored instanceof String s && s.startsWith(value.toString());
+            case IN -> stored != null && contains(stored);
+            case IS_NULL -> stored == null;
+            case IS_NOT_NULL -> stored != null;
+        };
+    }
+
+    private boolean contains(Object stored) {
+        if (values == null) return false;
+        for (Object v : values) if (Values.equal(stored, v)) return true;
         return false;
     }
+
+    @Override
+    public String toString() {
+        return switch (getOperator()) {
+            case EQUALS -> column + " = " + format(value);
+            case NOT_EQUALS -> column + " <> " + format(value);
+            case LESS -> column + " < " + format(value);
+            case LESS_OR_EQUAL -> column + " <= " + format(value);
+            case GREATER -> column + " > " + format(value);
+            case GREATER_OR_EQUAL -> column + " >= " + format(value);
+            case BETWEEN -> column + " BETWEEN " + format(value) + " AND " + format(to);
+            case PREFIX -> column + " LIKE " + format(value + "%");
+            case IN -> column + " IN (" + (values == null ? ""
+                    : String.join(", ", values.stream().map(QueryCondition::format).toList())) + ")";
+            case IS_NULL -> column + " IS NULL";
+            case IS_NOT_NULL -> column + " IS NOT NULL";
+        };
+    }
+
+    private static String format(Object value) {
+        if (value instanceof JsonDate date && date.getDate() != null) return "'" + date.getDate().toInstant() + "'";
+        return value instanceof String || value instanceof Character ? "'" + value + "'" : String.valueOf(value);
+    }
+
+    private boolean comparable(Object stored) {
+        return stored != null && value != null;
+    }
+
+    /**
+     * Converts the values of this condition to the type of its column,
+     * e.g. dates given as ISO-8601 strings or epoch milliseconds.
+     * @return A copy with the converted values, this condition is left unchanged
+     */
+    public QueryCondition convertValues(TColumnType type) {
+        return withValues(convert(type, value), convert(type, to),
+                values == null ? null : values.stream().map(v -> convert(type, v)).toList());
+    }
+
+    private static Object convert(TColumnType type, Object value) {
+        if (value == null) return null;
+        if (type == TColumnType.DATE || type == TColumnType.TIME || type == TColumnType.DATETIME) {
+            if (value instanceof Map<?, ?> m && m.get("date") != null) value = m.get("date");
+            if (value instanceof Number n) return new JsonDate(new Date(n.longValue()));
+            if (value instanceof String s) {
+                try {
+                    return new JsonDate(Date.from(OffsetDateTime.parse(s).toInstant()));
+                } catch (DateTimeParseException ignored) {
+                }
+            }
+        }
+        return value;
+    }
+
+    public enum Operator {
+        EQUALS,
+        NOT_EQUALS,
+        LESS,
+        LESS_OR_EQUAL,
+        GREATER,
+        GREATER_OR_EQUAL,
+        BETWEEN,
+        /**
+         * Matches text values starting with the value of the condition
+         */
+        PREFIX,
+        /**
+         * Matches values equal to any of the {@link #getValues() values} of the condition
+         */
+        IN,
+        IS_NULL,
+        IS_NOT_NULL
+    }
 }
@@ -1,6 +1,7 @@
 package de.lunx.data.obj;
 
 import de.lunx.data.JsonDate;
+import de.lunx.data.index.IndexType;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -11,7 +12,7 @@ import java.util.UUID;
 @Getter
 @Setter
 public class TColumn {
-    private final TTable tTable;
+    private transient final TTable tTable;
     private String name;
     private TColumnType type;
 
@@ -24,6 +25,10 @@ public class TColumn {
     private int incrementValue;
     private boolean notNull;
     private boolean unique;
+    /**
+     * The secondary index kept for this column. Unique columns are always indexed.
+     */
+    private IndexType index = IndexType.NONE;
 
     public TColumn(TTable tTable, String name, TColumnType type) {
         this.tTable = tTable;
@@ -55,7 +60,7 @@ public class TColumn {
                 return value instanceof Boolean;
             }
             case CHAR -> {
-                return value instanceof String s && s.length() == 1;
+                return value instanceof Character || value instanceof String s && s.length() == 1;
             }
             case DATETIME, DATE, TIME -> {
                 return value instanceof JsonDate;
@@ -1,27 +1,44 @@
 package de.lunx.data.obj;
 
+import de.lunx.data.DataManager;
+import de.lunx.data.storage.Compression;
 import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TDatabase {
     @Getter
     private String name;
     private final List<UUID> tables = new ArrayList<>();
 
-    private transient final List<TTable> tableOBJs = new ArrayList<>();
+    private transient final List<TTable> tableOBJs = new CopyOnWriteArrayList<>();
     @Getter
     private final Charset charset;
+    /**
+     * The codec used for the table files of this database, {@code null} to use the configured default.
+     */
+    @Getter
+    @Setter
+    @Nullable
+    private Compression compression;
 
     public TDatabase(String name, Charset charset) {
         this.name = name;
         this.charset = charset;
     }
 
+    // Used by Gson, so the transient table list gets initialized
+    private TDatabase() {
+        this("", StandardCharsets.UTF_8);
+    }
+
     public void registerTTable(TTable tTable) {
         if (!tableOBJs.contains(tTable)) tableOBJs.add(tTable);
         if (!tables.contains(tTable.getUniqueID())) tables.add(tTable.getUniqueID());
@@ -44,20 +61,54 @@ public class TDatabase {
         return tables;
     }
 
+    /**
+     * Gets a table by its name, loading its rows first if they are not loaded yet.
+     * @param name The name of the table
+     * @return The table, or {@code null} if it does not exist or could not be loaded
+     */
     @Nullable
     public TTable getTable(String name) {
+        for (TTable t : tableOBJs) if (t.getName().equals(name)) return resident(t);
+        return null;
+    }
+
+    @Nullable
+    public TTable getTable(UUID uniqueID) {
+        for (TTable t : tableOBJs) if (t.getUniqueID().equals(uniqueID)) return resident(t);
+        return null;
+    }
+
+    /**
+     * Gets a table by its name without loading its rows.
+     * @return The table, or {@code null} if it does not exist
+     */
+    @Nullable
+    public TTable findTable(String name) {
         for (TTable t : tableOBJs) if (t.getName().equals(name)) return t;
         return null;
     }
 
+    @Nullable
+    private TTable resident(TTable t) {
+        if (!DataManager.getInstance().ensureResident(t)) return null;
+        t.touch();
+        return t;
+    }
+
     public boolean deleteTable(String name) {
         TTable t = getTable(name);
         if (t == null) return false;
         tables.remove(t.getUniqueID());
         tableOBJs.remove(t);
+        t.schemaChanged();
         return true;
     }
 
+    public boolean hasDirtyTables() {
+        for (TTable t : tableOBJs) if (t.isDirty()) return true;
+        return false;
+    }
+
     public boolean hasTable(String name) {
         for (TTable t : tableOBJs) if (t.getName().equals(name)) return true;
         return false;
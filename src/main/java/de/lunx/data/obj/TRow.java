@@ -0,0 +1,89 @@
+package de.lunx.data.obj;
+
+import java.util.*;
+
+/**
+ * Read-only map view of a row, backed by the values of the row in column order.
+ * Columns without a value are not part of the map.
+ *
+ * <p>Rows are stored as {@code Object[]} with one slot per column of the table, so the column
+ * names are not repeated in every row. Changes are made by copying {@link #getValues()} and passing
+ * the copy to {@link TTable#setRow(int, Object[])}.</p>
+ */
+public class TRow extends AbstractMap<String, Object> {
+    private final TTable table;
+    private final Object[] values;
+
+    public TRow(TTable table, Object[] values) {
+        this.table = table;
+        this.values = values;
+    }
+
+    /**
+     * @param column The ordinal of the column, see {@link TTable#indexOf(String)}
+     * @return The value, or {@code null} if the row has no value for the column
+     */
+    public Object get(int column) {
+        return column >= 0 && column < values.length ? values[column] : null;
+    }
+
+    /**
+     * @return The values of this row in column order. Must not be modified.
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return key instanceof String name ? get(table.indexOf(name)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Object value : values) if (value != null) size++;
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(table.getColumns().get(next).getName(), values[next]);
+                        next = advance(next + 1);
+                        return entry;
+                    }
+
+                    private int advance(int from) {
+                        int limit = Math.min(values.length, table.getColumns().size());
+                        while (from < limit && values[from] == null) from++;
+                        return from < limit ? from : values.length;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return TRow.this.size();
+            }
+        };
+    }
+}
@@ -1,13 +1,22 @@
 package de.lunx.data.obj;
 
 import de.lunx.data.DataManager;
+import de.lunx.data.index.HashIndex;
+import de.lunx.data.index.IndexType;
+import de.lunx.data.index.OrderedIndex;
+import de.lunx.data.index.TableIndex;
+import de.lunx.data.storage.ColumnarRowList;
+import de.lunx.data.storage.PagedRowList;
+import de.lunx.data.storage.ScanPool;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.UUID;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
 import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.IntPredicate;
 
 @Getter
 public class TTable {
@@ -15,52 +24,485 @@ public class TTable {
 
     private String name;
     private String dataBase;
+    private long version;
+    private transient volatile long savedVersion;
+    private transient volatile boolean resident = true;
+    private transient volatile long lastAccess = System.currentTimeMillis();
+    /**
+     * Counts changes of the columns of this table, e.g. to invalidate queries prepared against them
+     */
+    private transient volatile int schemaVersion;
+    /**
+     * Counts truncations and deletions of rows, which move or remove rows, so positions found before become stale
+     */
+    private transient int layoutVersion;
+    /**
+     * Counts the queries using the rows of this table, which is not unloaded while any does
+     */
+    private transient int users;
 
     private final List<TColumn> columns = new ArrayList<>();
-    private final List<HashMap<String, Object>> data = new ArrayList<>();
+    private transient final Map<String, Integer> columnIndex = new HashMap<>();
+    /**
+     * Secondary indexes by column ordinal
+     */
+    private transient final Map<Integer, TableIndex> indexes = new HashMap<>();
+    /**
+     * The rows of this table, each one holding a value per column in column order.
+     * Stored arrays are never modified, changed rows are replaced as a whole.
+     */
+    private List<Object[]> data;
 
     public TTable(String name, String dataBase) {
+        this(UUID.randomUUID(), name, dataBase);
+    }
+
+    public TTable(UUID uniqueID, String name, String dataBase) {
+        this(uniqueID, name, dataBase, new ArrayList<>());
+    }
+
+    /**
+     * @param storage The list the rows of this table are kept in
+     */
+    public TTable(UUID uniqueID, String name, String dataBase, List<Object[]> storage) {
         this.name = name;
         this.dataBase = dataBase;
-        this.uniqueID = UUID.randomUUID();
+        this.uniqueID = uniqueID;
+        this.data = storage;
     }
 
     public TTable addColumn(TColumn column) {
+        schemaChanged();
+        columnIndex.put(column.getName(), columns.size());
         columns.add(column);
+        if (data instanceof ColumnarRowList columnar) columnar.addColumn(column.getType());
+        if (column.isUnique() && column.getIndex() == IndexType.NONE) column.setIndex(IndexType.HASH);
+        if (column.getIndex() != IndexType.NONE) createIndex(column.getName(), column.getIndex());
         return this;
     }
 
-    public boolean insertData(HashMap<String, Object> newRow) throws IllegalArgumentException {
-        for (String col : newRow.keySet()) {
-            TColumn column = getColumn(col);
-            if (column == null) {
-                throw new IllegalArgumentException("\"" + col + "\" is not present in target table " + getName());
-            }
-            if (!column.validate(newRow.get(col))) {
-                throw new IllegalArgumentException("Cannot insert data in column " + col + " as of invalid type");
+    /**
+     * Creates an index on a column and fills it with the current rows. Must be called while holding the table's lock.
+     * @return {@code false} if the table has no such column
+     */
+    public boolean createIndex(String column, IndexType type) {
+        int ordinal = indexOf(column);
+        if (ordinal < 0 || type == IndexType.NONE) return false;
+        TableIndex index = type == IndexType.ORDERED ? new OrderedIndex() : new HashIndex();
+        for (int i = 0; i < data.size(); i++) index.insert(getValue(i, ordinal), i);
+        indexes.put(ordinal, index);
+        columns.get(ordinal).setIndex(type);
+        return true;
+    }
+
+    /**
+     * Drops the index of a column. Must be called while holding the table's lock.
+     * @return {@code false} if the column has no index
+     */
+    public boolean dropIndex(String column) {
+        int ordinal = indexOf(column);
+        if (ordinal < 0 || indexes.remove(ordinal) == null) return false;
+        columns.get(ordinal).setIndex(IndexType.NONE);
+        return true;
+    }
+
+    /**
+     * @param column The ordinal of the column
+     * @return The index of the column, or {@code null} if it has none
+     */
+    @Nullable
+    public TableIndex getIndex(int column) {
+        return indexes.get(column);
+    }
+
+    /**
+     * Fills all indexes from the rows again, after rows have been added to the storage directly.
+     */
+    public void rebuildIndexes() {
+        for (Map.Entry<Integer, TableIndex> entry : indexes.entrySet()) {
+            TableIndex index = entry.getValue();
+            index.clear();
+            for (int i = 0; i < data.size(); i++) index.insert(getValue(i, entry.getKey()), i);
+        }
+    }
+
+    /**
+     * @param column The ordinal of the column, see {@link #indexOf(String)}
+     * @return The value of a column as stored, which may differ from the value passed in for columnar storage
+     */
+    public Object getValue(int row, int column) {
+        if (column < 0) return null;
+        if (data instanceof ColumnarRowList columnar) return columnar.getColumn(column).get(row);
+        Object[] values = data.get(row);
+        return column < values.length ? values[column] : null;
+    }
+
+    /**
+     * @return The ordinal of the column in the rows of this table, or {@code -1} if there is no such column
+     */
+    public int indexOf(String column) {
+        Integer index = columnIndex.get(column);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Converts a row given by column names into the layout of this table.
+     * @throws IllegalArgumentException If the row contains a column this table does not have
+     */
+    public Object[] toValues(Map<String, ?> row) throws IllegalArgumentException {
+        Object[] values = new Object[columns.size()];
+        for (Map.Entry<String, ?> entry : row.entrySet()) {
+            int index = indexOf(entry.getKey());
+            if (index < 0) throw new IllegalArgumentException("\"" + entry.getKey() + "\" is not present in target table " + getName());
+            values[index] = entry.getValue();
+        }
+        return values;
+    }
+
+    /**
+     * Copies the values of a row, e.g. to change them. The copy has a slot for every column.
+     */
+    public Object[] copyValues(Object[] values) {
+        return Arrays.copyOf(values, columns.size());
+    }
+
+    public int getRowCount() {
+        return data.size();
+    }
+
+    /**
+     * Compares a single value of a row. Columnar storage compares it without assembling the row.
+     * @param column The ordinal of the column, see {@link #indexOf(String)}
+     */
+    public boolean valueEquals(int row, int column, Object value) {
+        if (data instanceof ColumnarRowList columnar) return columnar.valueEquals(row, column, value);
+        Object[] values = data.get(row);
+        return Values.equal(column >= 0 && column < values.length ? values[column] : null, value);
+    }
+
+    /**
+     * Checks a condition on a single value of a row.
+     * @param column The ordinal of the condition's column
+     */
+    public boolean matches(int row, int column, QueryCondition condition) {
+        if (condition.getOperator() == QueryCondition.Operator.EQUALS) return valueEquals(row, column, condition.getValue());
+        return condition.matches(getValue(row, column));
+    }
+
+    /**
+     * Reads some values of a row. Columnar storage only reads the given columns.
+     * @param columns The ordinals of the columns, see {@link #indexOf(String)}
+     * @return The values in the order of the columns
+     */
+    public Object[] getValues(int row, int[] columns) {
+        Object[] result = new Object[columns.length];
+        if (data instanceof ColumnarRowList) {
+            for (int c = 0; c < columns.length; c++) result[c] = getValue(row, columns[c]);
+            return result;
+        }
+        Object[] values = data.get(row);
+        for (int c = 0; c < columns.length; c++) {
+            result[c] = columns[c] >= 0 && columns[c] < values.length ? values[columns[c]] : null;
+        }
+        return result;
+    }
+
+    public TRow getRow(int row) {
+        return new TRow(this, data.get(row));
+    }
+
+    /**
+     * @return Views of all rows at the time of the call. Must be called while holding the table's lock.
+     */
+    public List<Map<String, Object>> getRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(data.size());
+        for (Object[] values : data) rows.add(new TRow(this, values));
+        return rows;
+    }
+
+    public void addRow(Object[] values) {
+        data.add(values);
+        int row = data.size() - 1;
+        for (Map.Entry<Integer, TableIndex> entry : indexes.entrySet()) {
+            entry.getValue().insert(getValue(row, entry.getKey()), row);
+        }
+    }
+
+    /**
+     * Appends rows to the table, see {@link #validateRows(List)}. Must be called while holding the table's lock.
+     * @return The position of the first appended row
+     */
+    public int addRows(List<Object[]> rows) {
+        int first = data.size();
+        for (Object[] values : rows) addRow(values);
+        return first;
+    }
+
+    /**
+     * Checks the new values of some columns, e.g. of an update.
+     * @param columns The ordinals of the columns, negative ones are skipped
+     * @throws IllegalArgumentException If a value does not fit its column
+     */
+    public void validateValues(int[] columns, Object[] values) throws IllegalArgumentException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] < 0 || values[i] == null) continue;
+            TColumn column = this.columns.get(columns[i]);
+            if (!column.validate(values[i])) throw new IllegalArgumentException("Cannot set column " + column.getName() + " as of invalid type");
+        }
+    }
+
+    /**
+     * Checks new rows against the columns of the table in one pass and fills in the default values of missing ones.
+     * @param rows Rows in the layout of this table, see {@link #toValues(Map)}
+     * @throws IllegalArgumentException If a value does not fit its column, or a column that must not be null has no value
+     */
+    public void validateRows(List<Object[]> rows) throws IllegalArgumentException {
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] values = rows.get(r);
+            for (int c = 0; c < values.length; c++) {
+                TColumn column = columns.get(c);
+                if (values[c] == null) values[c] = column.getDefaultValue();
+                if (values[c] == null) {
+                    if (column.isNotNull()) throw new IllegalArgumentException("Row " + r + " has no value for column " + column.getName());
+                } else if (!column.validate(values[c])) {
+                    throw new IllegalArgumentException("Cannot insert data in column " + column.getName() + " of row " + r + " as of invalid type");
+                }
             }
-            data.add(newRow);
         }
+    }
+
+    public boolean insertData(HashMap<String, Object> newRow) throws IllegalArgumentException {
+        List<Object[]> rows = List.<Object[]>of(toValues(newRow));
+        validateRows(rows);
+        addRows(rows);
         return true;
     }
 
     public void truncate() {
+        layoutVersion++;
         data.clear();
+        for (TableIndex index : indexes.values()) index.clear();
+    }
+
+    /**
+     * Scans the positions {@code [0, size)} in chunks. Large ranges are scanned in parallel on the {@link ScanPool},
+     * unless the rows are kept in paged storage, which reads one row at a time. Must be called while holding the table's lock.
+     * @param size The number of positions, e.g. the row count or the length of a list of candidate rows
+     */
+    public <R> R scanChunks(int size, ScanPool.ChunkScan<R> scan, BinaryOperator<R> merge) {
+        if (data instanceof PagedRowList) return scan.scan(0, size);
+        return DataManager.getInstance().getScanPool().scan(size, scan, merge);
+    }
+
+    /**
+     * Finds the rows matching a filter, see {@link #scanChunks(int, ScanPool.ChunkScan, BinaryOperator)}.
+     * @param from The position of the first row to check
+     * @return The positions of the matching rows in ascending order
+     */
+    public int[] scan(int from, IntPredicate filter) {
+        int start = Math.min(from, data.size());
+        return scanChunks(data.size() - start, (first, last) -> matching(null, start + first, start + last, filter), TTable::concat);
+    }
+
+    /**
+     * Checks candidate rows against a filter, see {@link #scanChunks(int, ScanPool.ChunkScan, BinaryOperator)}.
+     * @return The matching candidates in their original order
+     */
+    public int[] filter(int[] rows, IntPredicate filter) {
+        return scanChunks(rows.length, (from, to) -> matching(rows, from, to, filter), TTable::concat);
     }
 
-    public void getThroughRowsWithIndex(BiConsumer<HashMap<String, Object>, Integer> action) {
+    private static int[] matching(@Nullable int[] rows, int from, int to, IntPredicate filter) {
+        int[] result = new int[Math.min(to - from, 1024)];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int row = rows == null ? i : rows[i];
+            if (!filter.test(row)) continue;
+            if (count == result.length) result = Arrays.copyOf(result, count * 2);
+            result[count++] = row;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        if (first.length == 0) return second;
+        if (second.length == 0) return first;
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    public void getThroughRowsWithIndex(BiConsumer<TRow, Integer> action) {
         for (int i = 0; i < data.size(); i++) {
-            action.accept(data.get(i), i);
+            action.accept(getRow(i), i);
+        }
+    }
+
+    /**
+     * Removes rows in the order they were deleted, each position counting the rows left by the deletions before it.
+     * The rows behind the removed ones and their index entries are moved with one pass for all of them.
+     * Positions past the end of the table at their turn are ignored.
+     */
+    public void deleteRows(int[] rows) {
+        int[] removed = initialPositions(rows, data.size());
+        if (removed.length == 0) return;
+        layoutVersion++;
+        if (!indexes.isEmpty()) {
+            for (int row : removed) {
+                Object[] old = data.get(row);
+                for (Map.Entry<Integer, TableIndex> entry : indexes.entrySet()) {
+                    int column = entry.getKey();
+                    entry.getValue().delete(column < old.length ? old[column] : null, row);
+                }
+            }
+            for (TableIndex index : indexes.values()) index.shiftAfter(removed);
+        }
+        int target = removed[0];
+        for (int row = removed[0], next = 0; row < data.size(); row++) {
+            if (next < removed.length && removed[next] == row) next++;
+            else data.set(target++, data.get(row));
+        }
+        for (int row = data.size() - 1; row >= target; row--) data.remove(row);
+    }
+
+    /**
+     * Translates the positions of rows deleted one after another into the positions they had before the first deletion.
+     * @return The translated positions in ascending order
+     */
+    private static int[] initialPositions(int[] rows, int size) {
+        // Fenwick tree counting the rows left before a position, so the n-th remaining row is found in logarithmic time
+        int[] tree = new int[size + 1];
+        for (int i = 1; i <= size; i++) {
+            tree[i]++;
+            int parent = i + (i & -i);
+            if (parent <= size) tree[parent] += tree[i];
+        }
+        int[] result = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (row < 0 || row >= size - count) continue;
+            int position = 0;
+            int remaining = row + 1;
+            for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+                if (position + step <= size && tree[position + step] < remaining) {
+                    position += step;
+                    remaining -= tree[position];
+                }
+            }
+            result[count++] = position;
+            for (int i = position + 1; i <= size; i += i & -i) tree[i]--;
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Replaces the values of a row.
+     * @param values The new values in column order, must not be modified afterwards
+     */
+    public void setRow(int row, Object[] values) {
+        Object[] old = indexes.isEmpty() ? null : data.get(row);
+        data.set(row, values);
+        for (Map.Entry<Integer, TableIndex> entry : indexes.entrySet()) {
+            int column = entry.getKey();
+            Object before = column < old.length ? old[column] : null;
+            Object after = getValue(row, column);
+            if (Values.equal(before, after)) continue;
+            entry.getValue().delete(before, row);
+            entry.getValue().insert(after, row);
         }
     }
 
-    public void deleteRow(int row) {
-        data.remove(row);
+    /**
+     * Moves all rows into another storage.
+     * @param storage The new storage, must be empty
+     */
+    public synchronized void useStorage(List<Object[]> storage) throws IOException {
+        if (storage == data) return;
+        if (storage instanceof ColumnarRowList columnar) {
+            for (int i = columnar.getColumnCount(); i < columns.size(); i++) columnar.addColumn(columns.get(i).getType());
+        }
+        storage.addAll(data);
+        List<Object[]> old = data;
+        data = storage;
+        if (old instanceof Closeable c) c.close();
+    }
+
+    /**
+     * Releases resources held by the storage of this table, e.g. the file of paged storage.
+     */
+    public synchronized void closeStorage() throws IOException {
+        if (data instanceof Closeable c) c.close();
+    }
+
+    /**
+     * Increments the version of this table. Must be called while holding the table's lock.
+     * @return The new version
+     */
+    public long nextVersion() {
+        return ++version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Marks the table as changed without a logged row change, e.g. after a schema change.
+     * Must be called while holding the table's lock.
+     */
+    public void markDirty() {
+        version++;
+    }
+
+    public void markSaved(long version) {
+        savedVersion = version;
+    }
+
+    public boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    /**
+     * Marks the columns of this table as changed, see {@link #getSchemaVersion()}.
+     */
+    public void schemaChanged() {
+        schemaVersion++;
+    }
+
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Keeps the rows of this table loaded until {@link #release()} is called, see {@link DataManager#acquire(TTable)}.
+     */
+    public synchronized void retain() {
+        users++;
+    }
+
+    public synchronized void release() {
+        users--;
+    }
+
+    /**
+     * @return Whether a query is using the rows of this table
+     */
+    public synchronized boolean isInUse() {
+        return users > 0;
+    }
+
+    /**
+     * @param resident Whether the rows of this table are loaded
+     */
+    public void setResident(boolean resident) {
+        this.resident = resident;
     }
 
     public TColumn getColumn(String name) {
-        for (TColumn c : columns) if (c.getName().equals(name)) return c;
-        return null;
+        int index = indexOf(name);
+        return index < 0 ? null : columns.get(index);
     }
 
     public void build() {
@@ -0,0 +1,47 @@
+package de.lunx.data.obj;
+
+import de.lunx.data.JsonDate;
+
+import java.util.Objects;
+
+/**
+ * Comparison of row values, independent of how a value has been stored or parsed.
+ * Numbers are compared by their value, so a condition parsed as {@code 3.0} matches the integer {@code 3}.
+ * Dates are compared by their time.
+ */
+public final class Values {
+    private Values() {
+    }
+
+    public static boolean equal(Object a, Object b) {
+        if (a == null || b == null) return a == b;
+        if (a instanceof Number x && b instanceof Number y) return Double.compare(x.doubleValue(), y.doubleValue()) == 0;
+        if (a instanceof JsonDate x && b instanceof JsonDate y) return Objects.equals(x.getDate(), y.getDate());
+        return a.equals(b);
+    }
+
+    /**
+     * Orders two values. {@code null} comes first, values of unrelated types are ordered by their type.
+     */
+    public static int compare(Object a, Object b) {
+        Object x = key(a);
+        Object y = key(b);
+        if (x == null || y == null) return x == null ? (y == null ? 0 : -1) : 1;
+        if (x instanceof Double d && y instanceof Double e) return Double.compare(d, e);
+        if (x.getClass() == y.getClass() && x instanceof Comparable<?>) {
+            @SuppressWarnings("unchecked")
+            Comparable<Object> c = (Comparable<Object>) x;
+            return c.compareTo(y);
+        }
+        return x.getClass().getName().compareTo(y.getClass().getName());
+    }
+
+    /**
+     * @return A key for hash lookups that is the same for all values that are {@link #equal(Object, Object)}
+     */
+    public static Object key(Object value) {
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof JsonDate d) return d.getDate() == null ? null : d.getDate().getTime();
+        return value;
+    }
+}
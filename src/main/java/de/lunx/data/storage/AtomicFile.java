@@ -0,0 +1,98 @@
+package de.lunx.data.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces a file without ever leaving a partially written version of it behind.
+ *
+ * <p>The content is written to a temporary file next to the target. {@link #commit()} forces it
+ * to disk and renames it over the target in one atomic step. Closing the file without committing
+ * it discards the temporary file, so the previous version stays untouched.</p>
+ */
+@Slf4j
+public class AtomicFile implements Closeable {
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    private final File target;
+    private final File temp;
+    private final FileOutputStream file;
+    @Nullable
+    private final DirectorySync directorySync;
+    private boolean done;
+
+    /**
+     * @param target        The file to replace
+     * @param directorySync Collects the directory to sync it together with other files,
+     *                      {@code null} to sync it right after the rename
+     */
+    public AtomicFile(File target, @Nullable DirectorySync directorySync) throws IOException {
+        this.target = target;
+        this.temp = new File(target.getParentFile(), target.getName() + TEMP_SUFFIX);
+        this.directorySync = directorySync;
+        this.file = new FileOutputStream(temp);
+    }
+
+    /**
+     * @return A stream writing into the temporary file. Closing it does not close the file.
+     */
+    public OutputStream stream() {
+        return new FilterOutputStream(file) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Forces the written content to disk and moves it over the target file.
+     */
+    public void commit() throws IOException {
+        if (done) throw new IOException("File " + target.getName() + " has already been closed");
+        done = true;
+        try {
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (directorySync != null) directorySync.add(target.getParentFile());
+        else DirectorySync.sync(target.getParentFile());
+    }
+
+    /**
+     * Discards the temporary file if the content has not been committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (done) return;
+        done = true;
+        try {
+            file.close();
+        } finally {
+            if (!temp.delete()) log.warn("Could not delete {}", temp.getName());
+        }
+    }
+
+    /**
+     * Deletes temporary files left behind by writes that were interrupted, e.g. by a crash.
+     */
+    public static void deleteStale(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        if (files == null) return;
+        for (File f : files) {
+            if (f.delete()) log.info("Deleted incomplete file {}", f.getName());
+            else log.warn("Could not delete incomplete file {}", f.getName());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package de.lunx.data.storage;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Marks the point up to which the changes of a database are contained in its table files.
+ * Only the log segments starting at {@link #segment()} have to be replayed after a restart.
+ * @param segment The first log segment that is not part of the checkpoint
+ * @param timestamp When the checkpoint was completed
+ * @param versions The version of every table at the time of the checkpoint
+ */
+public record Checkpoint(long segment, long timestamp, Map<UUID, Long> versions) {
+}
@@ -0,0 +1,145 @@
+package de.lunx.data.storage;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.*;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads streams written by {@link ChunkedCipherOutputStream}, decrypting, verifying and decompressing
+ * one chunk at a time.
+ */
+public class ChunkedCipherInputStream extends FilterInputStream {
+    private final DataInputStream in;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] noncePrefix = new byte[ChunkedCipherOutputStream.NONCE_PREFIX_LENGTH];
+    private final int chunkSize;
+    private final Inflater inflater;
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int chunk;
+    private boolean finished;
+
+    /**
+     * @param in  The encrypted stream, positioned at the magic number
+     * @param key The key the stream was encrypted with
+     */
+    public ChunkedCipherInputStream(InputStream in, SecretKey key) throws IOException {
+        super(in);
+        this.in = new DataInputStream(in);
+        this.key = key;
+        int magic = this.in.readInt();
+        if (magic != ChunkedCipherOutputStream.MAGIC && magic != ChunkedCipherOutputStream.MAGIC_UNCOMPRESSED)
+            throw new IOException("Not a chunked cipher stream");
+        this.chunkSize = this.in.readInt();
+        Compression compression = magic == ChunkedCipherOutputStream.MAGIC
+                ? Compression.fromId(this.in.readUnsignedByte()) : Compression.NONE;
+        this.inflater = compression == Compression.NONE ? null : new Inflater(true);
+        this.in.readFully(noncePrefix);
+        try {
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES/GCM is not available", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, buffer.length - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) inflater.end();
+        super.close();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Decrypts the next chunk if the current one has been consumed.
+     * @return {@code false} if the final chunk has been consumed
+     */
+    private boolean fill() throws IOException {
+        while (position == buffer.length) {
+            if (finished) return false;
+            int length;
+            int flags;
+            try {
+                length = in.readInt();
+                flags = in.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new IOException("Encrypted stream is truncated after chunk " + chunk, e);
+            }
+            if (length < 0 || length > chunkSize + ChunkedCipherOutputStream.TAG_BITS / 8)
+                throw new IOException("Invalid chunk length " + length);
+            byte[] encrypted = new byte[length];
+            in.readFully(encrypted);
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key,
+                        new GCMParameterSpec(ChunkedCipherOutputStream.TAG_BITS, ChunkedCipherOutputStream.nonce(noncePrefix, chunk)));
+                cipher.updateAAD(ChunkedCipherOutputStream.associatedData(chunk, flags));
+                buffer = cipher.doFinal(encrypted);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Chunk " + chunk + " failed authentication", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not decrypt chunk " + chunk, e);
+            }
+            if ((flags & ChunkedCipherOutputStream.FLAG_COMPRESSED) != 0) buffer = inflate(buffer);
+            position = 0;
+            chunk++;
+            finished = (flags & ChunkedCipherOutputStream.FLAG_FINAL) != 0;
+        }
+        return true;
+    }
+
+    private byte[] inflate(byte[] data) throws IOException {
+        if (inflater == null) throw new IOException("Chunk " + chunk + " is compressed, but the stream has no compression");
+        byte[] plain = new byte[chunkSize];
+        inflater.reset();
+        inflater.setInput(data);
+        try {
+            int n = inflater.inflate(plain);
+            if (!inflater.finished()) throw new IOException("Chunk " + chunk + " exceeds the chunk size");
+            return n == plain.length ? plain : Arrays.copyOf(plain, n);
+        } catch (DataFormatException e) {
+            throw new IOException("Could not decompress chunk " + chunk, e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package de.lunx.data.storage;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.zip.Deflater;
+
+/**
+ * Encrypts a stream in independently authenticated AES-GCM chunks, so neither side ever has to
+ * hold more than one chunk in memory. Chunks can be compressed before they are encrypted.
+ *
+ * <pre>
+ * header: magic, chunk size, compression, nonce prefix
+ * chunk:  [ciphertext length][flags][ciphertext + tag]
+ * </pre>
+ *
+ * The nonce of every chunk is the per-file prefix followed by the chunk index. The chunk index and
+ * the flags are authenticated as well, so reordered, dropped or truncated chunks are detected.
+ * Chunks that do not get smaller are stored uncompressed, which is recorded in their flags.
+ */
+public class ChunkedCipherOutputStream extends FilterOutputStream {
+    public static final int MAGIC = 0x54424332; // "TBC2"
+    /**
+     * Magic of files written before compression was supported, they have no compression in their header.
+     */
+    public static final int MAGIC_UNCOMPRESSED = 0x54424331; // "TBC1"
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int NONCE_PREFIX_LENGTH = 8;
+    static final int TAG_BITS = 128;
+    static final int FLAG_FINAL = 1;
+    static final int FLAG_COMPRESSED = 1 << 1;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final DataOutputStream out;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+    private final byte[] buffer;
+    private final Deflater deflater;
+    private final byte[] compressed;
+    private int count;
+    private int chunk;
+    private boolean closed;
+
+    public ChunkedCipherOutputStream(OutputStream out, SecretKey key, Compression compression) throws IOException {
+        this(out, key, compression, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedCipherOutputStream(OutputStream out, SecretKey key, Compression compression, int chunkSize) throws IOException {
+        super(out);
+        this.out = new DataOutputStream(out);
+        this.key = key;
+        this.buffer = new byte[chunkSize];
+        this.deflater = compression == Compression.NONE ? null : new Deflater(compression.level, true);
+        this.compressed = deflater == null ? null : new byte[chunkSize];
+        try {
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES/GCM is not available", e);
+        }
+        RANDOM.nextBytes(noncePrefix);
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(chunkSize);
+        this.out.writeByte(compression.id);
+        this.out.write(noncePrefix);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) writeChunk(false);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) writeChunk(false);
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Buffered data is only encrypted once a chunk is full or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writeChunk(true);
+            out.flush();
+        } finally {
+            if (deflater != null) deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(boolean last) throws IOException {
+        byte[] plain = buffer;
+        int length = count;
+        int flags = last ? FLAG_FINAL : 0;
+        if (deflater != null && count > 0) {
+            deflater.reset();
+            deflater.setInput(buffer, 0, count);
+            deflater.finish();
+            int n = deflater.deflate(compressed);
+            // Only keep the compressed chunk if it fit into the buffer and actually got smaller
+            if (deflater.finished() && n < count) {
+                plain = compressed;
+                length = n;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(noncePrefix, chunk)));
+            cipher.updateAAD(associatedData(chunk, flags));
+            byte[] encrypted = cipher.doFinal(plain, 0, length);
+            out.writeInt(encrypted.length);
+            out.writeByte(flags);
+            out.write(encrypted);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt chunk " + chunk, e);
+        }
+        chunk++;
+        count = 0;
+    }
+
+    static byte[] nonce(byte[] prefix, int chunk) {
+        return ByteBuffer.allocate(prefix.length + 4).put(prefix).putInt(chunk).array();
+    }
+
+    static byte[] associatedData(int chunk, int flags) {
+        return ByteBuffer.allocate(5).putInt(chunk).put((byte) flags).array();
+    }
+}
@@ -0,0 +1,377 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.Values;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * The values of one column of a {@link ColumnarRowList}. Numeric, boolean and date columns are kept
+ * in primitive arrays with a separate null bitmap, so their values are neither boxed nor scattered
+ * across the heap. Values are converted to the column type like they are when the table is saved.
+ */
+public abstract class ColumnVector {
+    protected final BitSet nulls = new BitSet();
+    protected int size;
+
+    public static ColumnVector of(TColumnType type) {
+        return switch (type) {
+            case INTEGER -> new IntVector();
+            case DECIMAL -> new DoubleVector();
+            case BOOLEAN -> new BooleanVector();
+            case DATE, TIME, DATETIME -> new DateVector();
+            default -> new ObjectVector();
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    public Object get(int row) {
+        return nulls.get(row) ? null : read(row);
+    }
+
+    public void set(int row, Object value) {
+        Object converted = value == null ? null : convert(value);
+        if (converted == null) {
+            nulls.set(row);
+        } else {
+            nulls.clear(row);
+            write(row, converted);
+        }
+    }
+
+    public void add(int row, Object value) {
+        ensureCapacity(size + 1);
+        move(row, row + 1, size - row);
+        for (int i = size; i > row; i--) nulls.set(i, nulls.get(i - 1));
+        size++;
+        set(row, value);
+    }
+
+    public void remove(int row) {
+        move(row + 1, row, size - row - 1);
+        for (int i = row; i < size - 1; i++) nulls.set(i, nulls.get(i + 1));
+        nulls.clear(size - 1);
+        size--;
+    }
+
+    public void clear() {
+        nulls.clear();
+        size = 0;
+    }
+
+    /**
+     * Compares a value of this column without boxing it.
+     * @return Whether the row holds the given value, see {@link Values#equal(Object, Object)}
+     */
+    public boolean valueEquals(int row, Object value) {
+        if (nulls.get(row)) return value == null;
+        return value != null && equalTo(row, value);
+    }
+
+    /**
+     * @return Whether {@link #getDouble(int)} can read the values of this column, which holds for numbers and dates
+     */
+    public boolean isNumeric() {
+        return false;
+    }
+
+    /**
+     * Reads a value without boxing it. Dates are read as milliseconds since the epoch.
+     * @param row A row that is not {@link #isNull(int) null}
+     * @throws UnsupportedOperationException If the column is not {@link #isNumeric() numeric}
+     */
+    public double getDouble(int row) {
+        throw new UnsupportedOperationException("Column values are not numeric");
+    }
+
+    /**
+     * @return The approximate number of bytes used by the values of this column
+     */
+    public abstract long estimateBytes();
+
+    /**
+     * Converts a value into the representation stored by this vector.
+     * @return The converted value
+     * @throws IllegalArgumentException If the value cannot be stored, values are validated against their column before
+     */
+    protected Object convert(Object value) {
+        return value;
+    }
+
+    protected abstract boolean equalTo(int row, Object value);
+
+    protected abstract Object read(int row);
+
+    protected abstract void write(int row, Object value);
+
+    protected abstract void ensureCapacity(int capacity);
+
+    protected abstract void move(int from, int to, int length);
+
+    static int grow(int length, int capacity) {
+        return Math.max(capacity, Math.max(16, length + (length >> 1)));
+    }
+
+    static class IntVector extends ColumnVector {
+        private int[] values = new int[16];
+
+        @Override
+        protected Object convert(Object value) {
+            return TableFormat.coerce(TColumnType.INTEGER, value);
+        }
+
+        @Override
+        public boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected boolean equalTo(int row, Object value) {
+            return value instanceof Number n && n.doubleValue() == values[row];
+        }
+
+        @Override
+        protected Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void write(int row, Object value) {
+            values[row] = (Integer) value;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+
+        @Override
+        protected void move(int from, int to, int length) {
+            System.arraycopy(values, from, values, to, length);
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 4L * values.length + nulls.size() / 8;
+        }
+    }
+
+    static class DoubleVector extends ColumnVector {
+        private double[] values = new double[16];
+
+        @Override
+        protected Object convert(Object value) {
+            return TableFormat.coerce(TColumnType.DECIMAL, value);
+        }
+
+        @Override
+        public boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected boolean equalTo(int row, Object value) {
+            return value instanceof Number n && Double.compare(n.doubleValue(), values[row]) == 0;
+        }
+
+        @Override
+        protected Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void write(int row, Object value) {
+            values[row] = (Double) value;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+
+        @Override
+        protected void move(int from, int to, int length) {
+            System.arraycopy(values, from, values, to, length);
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Keeps dates as milliseconds since the epoch.
+     */
+    static class DateVector extends ColumnVector {
+        private long[] values = new long[16];
+
+        @Override
+        protected Object convert(Object value) {
+            return TableFormat.coerce(TColumnType.DATETIME, value);
+        }
+
+        @Override
+        public boolean isNumeric() {
+            return true;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected boolean equalTo(int row, Object value) {
+            return value instanceof JsonDate d && d.getDate() != null && d.getDate().getTime() == values[row];
+        }
+
+        @Override
+        protected Object read(int row) {
+            return new JsonDate(new Date(values[row]));
+        }
+
+        @Override
+        protected void write(int row, Object value) {
+            values[row] = (Long) value;
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+
+        @Override
+        protected void move(int from, int to, int length) {
+            System.arraycopy(values, from, values, to, length);
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    static class BooleanVector extends ColumnVector {
+        private final BitSet values = new BitSet();
+
+        @Override
+        protected Object convert(Object value) {
+            return TableFormat.coerce(TColumnType.BOOLEAN, value);
+        }
+
+        @Override
+        protected boolean equalTo(int row, Object value) {
+            return value instanceof Boolean b && values.get(row) == b;
+        }
+
+        @Override
+        protected Object read(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        protected void write(int row, Object value) {
+            values.set(row, (Boolean) value);
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+        }
+
+        @Override
+        protected void move(int from, int to, int length) {
+            if (from > to) {
+                for (int i = 0; i < length; i++) values.set(to + i, values.get(from + i));
+            } else {
+                for (int i = length - 1; i >= 0; i--) values.set(to + i, values.get(from + i));
+            }
+        }
+
+        @Override
+        public long estimateBytes() {
+            return (values.size() + nulls.size()) / 8;
+        }
+    }
+
+    /**
+     * Keeps values of the remaining column types as objects.
+     */
+    static class ObjectVector extends ColumnVector {
+        private Object[] values = new Object[16];
+
+        @Override
+        protected boolean equalTo(int row, Object value) {
+            return Values.equal(values[row], value);
+        }
+
+        @Override
+        protected Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        protected void write(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        public void set(int row, Object value) {
+            super.set(row, value);
+            // Release values that are no longer referenced
+            if (value == null) values[row] = null;
+        }
+
+        @Override
+        public void remove(int row) {
+            super.remove(row);
+            values[size] = null;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(values, 0, size, null);
+            super.clear();
+        }
+
+        @Override
+        protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+
+        @Override
+        protected void move(int from, int to, int length) {
+            System.arraycopy(values, from, values, to, length);
+        }
+
+        @Override
+        public long estimateBytes() {
+            long bytes = 4L * values.length + nulls.size() / 8;
+            for (int i = 0; i < size; i++) {
+                if (values[i] instanceof String s) bytes += 40 + s.length();
+                else if (values[i] != null) bytes += 16;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.obj.TColumnType;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Row list that keeps the values of every column in a {@link ColumnVector} instead of one array per row.
+ * Rows returned by {@link #get(int)} are assembled from the columns when accessed, filters should use
+ * {@link #valueEquals(int, int, Object)} or the vectors directly to avoid that.
+ *
+ * <p>The vectors are created by {@link #addColumn(TColumnType)} in column order, which the table calls
+ * for each of its columns.</p>
+ */
+public class ColumnarRowList extends AbstractList<Object[]> implements RandomAccess {
+    private final List<ColumnVector> columns = new ArrayList<>();
+    private int size;
+
+    /**
+     * Appends a column. Existing rows have no value for it.
+     */
+    public void addColumn(TColumnType type) {
+        ColumnVector vector = ColumnVector.of(type);
+        for (int i = 0; i < size; i++) vector.add(i, null);
+        columns.add(vector);
+    }
+
+    public ColumnVector getColumn(int column) {
+        return columns.get(column);
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * Compares a single value of a row without assembling the row.
+     */
+    public boolean valueEquals(int row, int column, Object value) {
+        checkIndex(row, size);
+        if (column < 0 || column >= columns.size()) return value == null;
+        return columns.get(column).valueEquals(row, value);
+    }
+
+    @Override
+    public Object[] get(int index) {
+        checkIndex(index, size);
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < row.length; i++) row[i] = columns.get(i).get(index);
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object[] set(int index, Object[] row) {
+        Object[] old = get(index);
+        for (int i = 0; i < columns.size(); i++) columns.get(i).set(index, i < row.length ? row[i] : null);
+        return old;
+    }
+
+    @Override
+    public void add(int index, Object[] row) {
+        checkIndex(index, size + 1);
+        for (int i = 0; i < columns.size(); i++) columns.get(i).add(index, i < row.length ? row[i] : null);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Object[] remove(int index) {
+        Object[] old = get(index);
+        for (ColumnVector column : columns) column.remove(index);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (ColumnVector column : columns) column.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * @return The approximate number of bytes used by all columns
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (ColumnVector column : columns) bytes += column.estimateBytes();
+        return bytes;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+}
@@ -0,0 +1,87 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.Configuration;
+import de.lunx.data.DataManager;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static de.lunx.Main.printStackTrace;
+
+/**
+ * Background thread that moves persistence off the request threads. Changes of many queries are
+ * collected in the log, the changed tables are only written by a checkpoint once the checkpoint
+ * interval has passed or the log grew too large.
+ */
+@Slf4j
+public class CommitFlusher {
+    private final DataManager dataManager;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TobbQL-Flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CommitFlusher(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    public void start(Configuration configuration) {
+        if (configuration.getDurability() == Durability.BATCHED) {
+            int interval = Math.max(1, configuration.getSyncIntervalMillis());
+            executor.scheduleWithFixedDelay(this::syncLogs, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        int interval = Math.max(1, configuration.getCheckpointCheckMillis());
+        executor.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
+        if (configuration.getTableMemoryBudgetMb() > 0) {
+            int check = Math.max(1, configuration.getResidencyCheckSeconds());
+            executor.scheduleWithFixedDelay(this::enforceMemoryBudget, check, check, TimeUnit.SECONDS);
+        }
+        log.info("Started flusher with durability {}", configuration.getDurability());
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) log.warn("Flusher did not stop in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncLogs();
+        flushTables();
+    }
+
+    private void syncLogs() {
+        try {
+            dataManager.syncLogs();
+        } catch (Exception e) {
+            printStackTrace(log, e);
+        }
+    }
+
+    private void enforceMemoryBudget() {
+        try {
+            dataManager.getResidencyManager().enforceBudget();
+        } catch (Exception e) {
+            printStackTrace(log, e);
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            dataManager.checkpointIfDue();
+        } catch (Exception e) {
+            printStackTrace(log, e);
+        }
+    }
+
+    private void flushTables() {
+        try {
+            dataManager.saveDirty();
+        } catch (Exception e) {
+            printStackTrace(log, e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.lunx.data.storage;
+
+import java.util.zip.Deflater;
+
+/**
+ * Codec applied to every chunk of an encrypted file before it is encrypted. The codec is stored
+ * in the file header, so files written with different codecs can be read regardless of the
+ * current setting.
+ */
+public enum Compression {
+    NONE(0, 0),
+    /**
+     * Deflate at its fastest level, for data that is written often.
+     */
+    FAST(1, Deflater.BEST_SPEED),
+    DEFLATE(2, Deflater.DEFAULT_COMPRESSION);
+
+    public final int id;
+    public final int level;
+
+    Compression(int id, int level) {
+        this.id = id;
+        this.level = level;
+    }
+
+    public static Compression fromId(int id) {
+        for (Compression c : values()) {
+            if (c.id == id) return c;
+        }
+        throw new IllegalArgumentException("Unknown compression " + id);
+    }
+}
@@ -0,0 +1,45 @@
+package de.lunx.data.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the directories of renamed files, so they are synced once after many files have been
+ * replaced instead of once per file. A rename is only durable after its directory has been synced.
+ */
+@Slf4j
+public class DirectorySync {
+    private final Set<File> directories = new LinkedHashSet<>();
+
+    public synchronized void add(File directory) {
+        directories.add(directory);
+    }
+
+    /**
+     * Syncs all collected directories.
+     */
+    public synchronized void syncAll() throws IOException {
+        for (File directory : directories) sync(directory);
+        directories.clear();
+    }
+
+    /**
+     * Forces the entries of a directory to disk. Platforms that cannot open directories, like Windows,
+     * do not need this and are skipped.
+     */
+    public static void sync(File directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (UnsupportedOperationException | SecurityException e) {
+            log.debug("Cannot sync directory {}", directory);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").toLowerCase().contains("win")) throw e;
+        }
+    }
+}
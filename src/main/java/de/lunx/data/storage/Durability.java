@@ -0,0 +1,19 @@
+package de.lunx.data.storage;
+
+/**
+ * Controls when logged changes are forced to disk.
+ */
+public enum Durability {
+    /**
+     * Every mutating query waits until its changes are synced. Concurrent queries share one fsync.
+     */
+    SYNC,
+    /**
+     * The flusher syncs the logs in a fixed interval. A crash may lose the changes of that interval.
+     */
+    BATCHED,
+    /**
+     * Logs are never synced explicitly, the operating system decides when data reaches the disk.
+     */
+    OS
+}
@@ -0,0 +1,67 @@
+package de.lunx.data.storage;
+
+import com.google.gson.*;
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TColumn;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+
+import java.io.Reader;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads table files written in the old JSON format, so they can be rewritten as {@link TableFormat}.
+ * Row values are converted to the types of their columns, as Gson would otherwise read every number
+ * as a {@link Double}.
+ */
+public class LegacyTableConverter {
+    private static final Gson GSON = new Gson();
+
+    public static TTable convert(Reader json) {
+        JsonObject o = JsonParser.parseReader(json).getAsJsonObject();
+        TTable table = new TTable(UUID.fromString(o.get("uniqueID").getAsString()),
+                o.get("name").getAsString(), o.get("dataBase").getAsString());
+        if (o.has("version")) table.setVersion(o.get("version").getAsLong());
+
+        if (o.has("columns")) {
+            for (JsonElement e : o.getAsJsonArray("columns")) {
+                JsonObject c = e.getAsJsonObject();
+                TColumn column = new TColumn(table, c.get("name").getAsString(),
+                        TColumnType.valueOf(c.get("type").getAsString()));
+                if (c.has("size")) column.setSize(c.get("size").getAsInt());
+                if (c.has("decimals")) column.setDecimals(c.get("decimals").getAsInt());
+                if (c.has("incrementValue")) column.setIncrementValue(c.get("incrementValue").getAsInt());
+                if (c.has("autoIncrement")) column.setAutoIncrement(c.get("autoIncrement").getAsBoolean());
+                if (c.has("notNull")) column.setNotNull(c.get("notNull").getAsBoolean());
+                if (c.has("unique")) column.setUnique(c.get("unique").getAsBoolean());
+                if (c.has("defaultValue")) column.setDefaultValue(convertValue(c.get("defaultValue"), column.getType()));
+                table.addColumn(column);
+            }
+        }
+
+        if (o.has("data")) {
+            for (JsonElement e : o.getAsJsonArray("data")) {
+                Object[] row = new Object[table.getColumns().size()];
+                for (Map.Entry<String, JsonElement> value : e.getAsJsonObject().entrySet()) {
+                    int index = table.indexOf(value.getKey());
+                    if (index < 0) continue;
+                    row[index] = convertValue(value.getValue(), table.getColumns().get(index).getType());
+                }
+                table.addRow(row);
+            }
+        }
+        return table;
+    }
+
+    private static Object convertValue(JsonElement element, TColumnType type) {
+        if (element == null || element.isJsonNull()) return null;
+        return switch (type) {
+            case INTEGER -> element.getAsInt();
+            case DECIMAL -> element.getAsDouble();
+            case BOOLEAN -> element.getAsBoolean();
+            case DATE, TIME, DATETIME -> GSON.fromJson(element, JsonDate.class);
+            case TEXT, CHAR, FILE, UNIQUE_IDENTIFIER -> element.getAsString();
+        };
+    }
+}
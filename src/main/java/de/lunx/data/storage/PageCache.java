@@ -0,0 +1,59 @@
+package de.lunx.data.storage;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of mapped pages, shared by all {@link PagedFile}s. Evicted pages are
+ * unmapped once they are no longer referenced; their content stays in the file.
+ */
+public class PageCache {
+    private final int capacity;
+    private final LinkedHashMap<PageKey, MappedByteBuffer> pages;
+
+    @Getter
+    private long hits;
+    @Getter
+    private long misses;
+
+    /**
+     * @param capacity The maximum number of pages kept mapped at once
+     */
+    public PageCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PageKey, MappedByteBuffer> eldest) {
+                return size() > PageCache.this.capacity;
+            }
+        };
+    }
+
+    synchronized MappedByteBuffer page(PagedFile file, long page) throws IOException {
+        PageKey key = new PageKey(file, page);
+        MappedByteBuffer buffer = pages.get(key);
+        if (buffer != null) {
+            hits++;
+            return buffer;
+        }
+        misses++;
+        buffer = file.map(page);
+        pages.put(key, buffer);
+        return buffer;
+    }
+
+    synchronized void invalidate(PagedFile file) {
+        pages.keySet().removeIf(key -> key.file() == file);
+    }
+
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    private record PageKey(PagedFile file, long page) {
+    }
+}
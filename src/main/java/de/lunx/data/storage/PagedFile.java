@@ -0,0 +1,75 @@
+package de.lunx.data.storage;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file accessed through fixed-size memory-mapped pages. Reads and writes may span page boundaries.
+ */
+public class PagedFile implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    @Getter
+    private final int pageSize;
+    private final PageCache cache;
+
+    public PagedFile(File file, int pageSize, PageCache cache) throws IOException {
+        this.file = file;
+        this.pageSize = pageSize;
+        this.cache = cache;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public void read(long position, byte[] destination, int offset, int length) throws IOException {
+        while (length > 0) {
+            long page = position / pageSize;
+            int pageOffset = (int) (position % pageSize);
+            int n = Math.min(length, pageSize - pageOffset);
+            cache.page(this, page).get(pageOffset, destination, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void write(long position, byte[] source, int offset, int length) throws IOException {
+        while (length > 0) {
+            long page = position / pageSize;
+            int pageOffset = (int) (position % pageSize);
+            int n = Math.min(length, pageSize - pageOffset);
+            cache.page(this, page).put(pageOffset, source, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Drops all mapped pages and shrinks the file to zero.
+     */
+    public void clear() throws IOException {
+        cache.invalidate(this);
+        channel.truncate(0);
+    }
+
+    MappedByteBuffer map(long page) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, page * pageSize, pageSize);
+    }
+
+    /**
+     * Closes and deletes the file. Pages still referenced elsewhere stay readable until they are collected.
+     */
+    @Override
+    public void close() throws IOException {
+        cache.invalidate(this);
+        channel.close();
+        if (!file.delete()) file.deleteOnExit();
+    }
+}
@@ -0,0 +1,148 @@
+package de.lunx.data.storage;
+
+import java.io.*;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Row list that keeps rows encoded in a {@link PagedFile} instead of on the heap. Only the position and
+ * length of every row stay in memory, rows are decoded from their pages when accessed.
+ *
+ * <p>Rows returned by {@link #get(int)} are copies. Changes to them have to be written back with
+ * {@link #set(int, Object[])}. Changed rows are appended to the file, the space of their old version
+ * is reclaimed once more than half of the file is unused.</p>
+ */
+public class PagedRowList extends AbstractList<Object[]> implements RandomAccess, Closeable {
+    private PagedFile file;
+    private final File location;
+    private final int pageSize;
+    private final PageCache cache;
+
+    private long[] positions = new long[16];
+    private int[] lengths = new int[16];
+    private int size;
+    private long end;
+    private long unusedBytes;
+    private int generation;
+
+    public PagedRowList(File location, int pageSize, PageCache cache) throws IOException {
+        this.location = location;
+        this.pageSize = pageSize;
+        this.cache = cache;
+        this.file = new PagedFile(location, pageSize, cache);
+    }
+
+    @Override
+    public synchronized Object[] get(int index) {
+        checkIndex(index, size);
+        byte[] bytes = new byte[lengths[index]];
+        try {
+            file.read(positions[index], bytes, 0, bytes.length);
+            return RowCodec.readValues(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Object[] set(int index, Object[] row) {
+        Object[] old = get(index);
+        unusedBytes += lengths[index];
+        store(index, row);
+        compactIfNeeded();
+        return old;
+    }
+
+    @Override
+    public synchronized void add(int index, Object[] row) {
+        checkIndex(index, size + 1);
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        System.arraycopy(positions, index, positions, index + 1, size - index);
+        System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        size++;
+        store(index, row);
+        modCount++;
+    }
+
+    @Override
+    public synchronized Object[] remove(int index) {
+        Object[] old = get(index);
+        unusedBytes += lengths[index];
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        System.arraycopy(lengths, index + 1, lengths, index, size - index - 1);
+        size--;
+        modCount++;
+        compactIfNeeded();
+        return old;
+    }
+
+    @Override
+    public synchronized void clear() {
+        try {
+            file.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size = 0;
+        end = 0;
+        unusedBytes = 0;
+        modCount++;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    private void store(int index, Object[] row) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            RowCodec.writeValues(new DataOutputStream(bytes), row);
+            byte[] encoded = bytes.toByteArray();
+            file.write(end, encoded, 0, encoded.length);
+            positions[index] = end;
+            lengths[index] = encoded.length;
+            end += encoded.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrites all rows into a fresh file once more than half of the current one is unused.
+     */
+    private void compactIfNeeded() {
+        if (unusedBytes < (long) pageSize * 16 || unusedBytes < end / 2) return;
+        File compacted = new File(location.getParentFile(), location.getName() + "." + (++generation));
+        try {
+            PagedFile target = new PagedFile(compacted, pageSize, cache);
+            long position = 0;
+            for (int i = 0; i < size; i++) {
+                byte[] bytes = new byte[lengths[i]];
+                file.read(positions[i], bytes, 0, bytes.length);
+                target.write(position, bytes, 0, bytes.length);
+                positions[i] = position;
+                position += bytes.length;
+            }
+            file.close();
+            file = target;
+            end = position;
+            unusedBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+}
@@ -0,0 +1,99 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.Configuration;
+import de.lunx.data.DataManager;
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Keeps the estimated heap usage of all loaded tables below {@link Configuration#getTableMemoryBudgetMb()}.
+ * When the budget is exceeded, the least recently accessed tables are flushed and their rows unloaded.
+ * Unloaded tables are loaded again by {@link TDatabase#getTable(String)}.
+ */
+@Slf4j
+public class ResidencyManager {
+    private static final int SAMPLE_ROWS = 64;
+    private static final long PAGED_ROW_BYTES = 12;
+    private static final long ARRAY_BYTES = 16;
+    private static final long SLOT_BYTES = 4;
+
+    private final DataManager dataManager;
+
+    public ResidencyManager(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Unloads cold tables until the estimated heap usage fits into the budget again.
+     */
+    public void enforceBudget() {
+        Configuration configuration = dataManager.getConfiguration();
+        long budget = configuration.getTableMemoryBudgetMb() * 1024L * 1024L;
+        if (budget <= 0) return;
+
+        Map<TTable, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (TDatabase database : dataManager.getDatabases()) {
+            for (TTable table : database.getTables()) {
+                if (!table.isResident()) continue;
+                long size = estimateHeapBytes(table);
+                sizes.put(table, size);
+                total += size;
+            }
+        }
+        if (total <= budget) return;
+
+        List<TTable> coldestFirst = new ArrayList<>(sizes.keySet());
+        coldestFirst.sort(Comparator.comparingLong(TTable::getLastAccess));
+        long now = System.currentTimeMillis();
+        long minResidency = configuration.getMinResidencySeconds() * 1000L;
+        for (TTable table : coldestFirst) {
+            if (total <= budget) break;
+            long idle = now - table.getLastAccess();
+            if (idle < minResidency) break;
+            if (dataManager.unload(table)) {
+                total -= sizes.get(table);
+                log.info("Unloaded table {}.{} (~{} KB) after {} s without access", table.getDataBase(), table.getName(),
+                        sizes.get(table) / 1024, idle / 1000);
+            }
+        }
+        if (total > budget) {
+            log.warn("Loaded tables use ~{} MB, which exceeds the budget of {} MB", total / (1024 * 1024),
+                    configuration.getTableMemoryBudgetMb());
+        }
+    }
+
+    /**
+     * Estimates the heap used by the rows of a table from a sample of its rows.
+     */
+    public static long estimateHeapBytes(TTable table) {
+        synchronized (table) {
+            List<Object[]> data = table.getData();
+            int rows = data.size();
+            if (rows == 0) return 0;
+            if (data instanceof PagedRowList) return rows * PAGED_ROW_BYTES;
+            if (data instanceof ColumnarRowList columnar) return columnar.estimateBytes();
+
+            int samples = Math.min(rows, SAMPLE_ROWS);
+            long sampled = 0;
+            for (int i = 0; i < samples; i++) {
+                sampled += estimateRowBytes(data.get((int) ((long) i * rows / samples)));
+            }
+            return sampled / samples * rows;
+        }
+    }
+
+    private static long estimateRowBytes(Object[] row) {
+        long bytes = ARRAY_BYTES + SLOT_BYTES * row.length;
+        for (Object value : row) {
+            if (value instanceof String s) bytes += 40 + s.length();
+            else if (value instanceof Double || value instanceof Long || value instanceof JsonDate) bytes += 24;
+            else if (value instanceof Integer) bytes += 16;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.JsonDate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Self-describing binary encoding for single rows. Every value is prefixed with a tag byte,
+ * so a row can be decoded without knowing the schema of its table.
+ */
+public class RowCodec {
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte DATE = 6;
+    private static final byte CHARACTER = 7;
+
+    public static void writeRow(DataOutputStream out, Map<String, Object> row) throws IOException {
+        out.writeInt(row.size());
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    public static HashMap<String, Object> readRow(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        HashMap<String, Object> row = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            row.put(readString(in), readValue(in));
+        }
+        return row;
+    }
+
+    /**
+     * Writes the values of a row in column order.
+     */
+    public static void writeValues(DataOutputStream out, Object[] values) throws IOException {
+        out.writeInt(values.length);
+        for (Object value : values) writeValue(out, value);
+    }
+
+    public static Object[] readValues(DataInputStream in) throws IOException {
+        Object[] values = new Object[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = readValue(in);
+        return values;
+    }
+
+    public static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Number n) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(n.doubleValue());
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof JsonDate d) {
+            out.writeByte(DATE);
+            out.writeLong(d.getDate() == null ? Long.MIN_VALUE : d.getDate().getTime());
+        } else if (value instanceof Character c) {
+            out.writeByte(CHARACTER);
+            out.writeChar(c);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    public static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case INTEGER -> in.readInt();
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case STRING -> readString(in);
+            case DATE -> {
+                long time = in.readLong();
+                yield new JsonDate(time == Long.MIN_VALUE ? null : new Date(time));
+            }
+            case CHARACTER -> in.readChar();
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
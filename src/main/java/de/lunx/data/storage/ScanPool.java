@@ -0,0 +1,103 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.Configuration;
+import de.lunx.data.DataManager;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork/join pool scanning large tables in parallel. Ranges of at least {@link Configuration#getParallelScanThreshold()}
+ * positions are split into chunks, which are scanned on {@link Configuration#getScanParallelism()} threads.
+ * The results of the chunks are merged in position order, so the outcome is the same as scanning sequentially.
+ *
+ * <p>Workers only read the table while the caller holds its lock and waits for them,
+ * so the scanned code must not modify the table.</p>
+ */
+public class ScanPool {
+    /**
+     * Chunks per thread, so threads finishing early can take over work of slower ones
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final DataManager dataManager;
+    private volatile ForkJoinPool pool;
+
+    public ScanPool(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Scans the positions {@code [0, size)} in chunks, in parallel if the range is large enough.
+     * @param scan Scans one chunk
+     * @param merge Combines the results of two adjacent chunks, the earlier one first
+     */
+    public <R> R scan(int size, ChunkScan<R> scan, BinaryOperator<R> merge) {
+        Configuration configuration = dataManager.getConfiguration();
+        int threshold = Math.max(1, configuration.getParallelScanThreshold());
+        ForkJoinPool pool = size < threshold ? null : pool();
+        if (pool == null || pool.getParallelism() <= 1) return scan.scan(0, size);
+        int chunk = Math.max(1, Math.max(threshold / CHUNKS_PER_THREAD, size / (pool.getParallelism() * CHUNKS_PER_THREAD)));
+        return pool.invoke(new Chunk<>(scan, merge, 0, size, chunk));
+    }
+
+    public void shutdown() {
+        ForkJoinPool p = pool;
+        if (p != null) p.shutdown();
+    }
+
+    private ForkJoinPool pool() {
+        ForkJoinPool p = pool;
+        if (p != null) return p;
+        synchronized (this) {
+            if (pool == null) {
+                int parallelism = dataManager.getConfiguration().getScanParallelism();
+                pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(), f -> {
+                    var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(f);
+                    thread.setName("TobbQL-Scan-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+            }
+            return pool;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkScan<R> {
+        /**
+         * @param from The first position of the chunk
+         * @param to The position after the last one of the chunk
+         */
+        R scan(int from, int to);
+    }
+
+    // Tasks are never serialized, they only run on the scan pool
+    @SuppressWarnings("serial")
+    private static class Chunk<R> extends RecursiveTask<R> {
+        private final ChunkScan<R> scan;
+        private final BinaryOperator<R> merge;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Chunk(ChunkScan<R> scan, BinaryOperator<R> merge, int from, int to, int chunk) {
+            this.scan = scan;
+            this.merge = merge;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= chunk) return scan.scan(from, to);
+            int middle = (from + to) >>> 1;
+            Chunk<R> right = new Chunk<>(scan, merge, middle, to, chunk);
+            right.fork();
+            R left = new Chunk<>(scan, merge, from, middle, chunk).compute();
+            return merge.apply(left, right.join());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package de.lunx.data.storage;
+
+/**
+ * Where the rows of loaded tables are kept.
+ */
+public enum StorageMode {
+    /**
+     * All rows are kept as objects on the heap.
+     */
+    HEAP,
+    /**
+     * Rows are kept encoded in memory-mapped pages and only decoded when accessed.
+     */
+    PAGED,
+    /**
+     * Rows are kept column by column, numeric, boolean and date columns in primitive arrays.
+     */
+    COLUMNAR
+}
@@ -0,0 +1,230 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.JsonDate;
+import de.lunx.data.index.IndexType;
+import de.lunx.data.obj.TColumn;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Binary on-disk format of {@code .tbb} table files.
+ *
+ * <pre>
+ * header:  magic, format version, table id, name, database, table version
+ * schema:  column count, then name, type, size, decimals, increment, flags, default value per column
+ * rows:    blocks of [row count][byte length][rows], terminated by a block with row count 0
+ * row:     null bitmap, then the value of every non-null column in schema order
+ * </pre>
+ *
+ * INTEGER, DECIMAL, BOOLEAN, UNIQUE_IDENTIFIER and the date types use fixed-width encodings,
+ * text types are length prefixed. Column names are only stored once in the schema, rows map
+ * directly onto the column-ordered values of {@link TTable}. Rows are
+ * written and read one block at a time, so tables can be streamed through an encrypted file.
+ */
+public class TableFormat {
+    public static final int MAGIC = 0x54424246; // "TBBF"
+    public static final short FORMAT_VERSION = 1;
+    private static final int BLOCK_ROWS = 1024;
+
+    private static final int FLAG_AUTO_INCREMENT = 1;
+    private static final int FLAG_NOT_NULL = 1 << 1;
+    private static final int FLAG_UNIQUE = 1 << 2;
+    private static final int FLAG_HASH_INDEX = 1 << 3;
+    private static final int FLAG_ORDERED_INDEX = 1 << 4;
+
+    /**
+     * Writes a table. Must be called while holding the table's lock.
+     */
+    public static void write(TTable table, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeLong(table.getUniqueID().getMostSignificantBits());
+        out.writeLong(table.getUniqueID().getLeastSignificantBits());
+        RowCodec.writeString(out, table.getName());
+        RowCodec.writeString(out, table.getDataBase());
+        out.writeLong(table.getVersion());
+
+        List<TColumn> columns = table.getColumns();
+        out.writeInt(columns.size());
+        for (TColumn c : columns) {
+            RowCodec.writeString(out, c.getName());
+            RowCodec.writeString(out, c.getType().name());
+            out.writeInt(c.getSize());
+            out.writeInt(c.getDecimals());
+            out.writeInt(c.getIncrementValue());
+            out.writeByte((c.isAutoIncrement() ? FLAG_AUTO_INCREMENT : 0)
+                    | (c.isNotNull() ? FLAG_NOT_NULL : 0)
+                    | (c.isUnique() ? FLAG_UNIQUE : 0)
+                    | (c.getIndex() == IndexType.HASH ? FLAG_HASH_INDEX : 0)
+                    | (c.getIndex() == IndexType.ORDERED ? FLAG_ORDERED_INDEX : 0));
+            RowCodec.writeValue(out, c.getDefaultValue());
+        }
+
+        List<Object[]> data = table.getData();
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        DataOutputStream blockOut = new DataOutputStream(block);
+        for (int start = 0; start < data.size(); start += BLOCK_ROWS) {
+            int end = Math.min(data.size(), start + BLOCK_ROWS);
+            block.reset();
+            for (int i = start; i < end; i++) writeRow(blockOut, columns, data.get(i));
+            blockOut.flush();
+            out.writeInt(end - start);
+            out.writeInt(block.size());
+            block.writeTo(out);
+        }
+        out.writeInt(0);
+    }
+
+    /**
+     * Reads a table.
+     * @param storage Creates the list the rows are read into for the id of the table
+     */
+    public static TTable read(DataInputStream in, Function<UUID, List<Object[]>> storage) throws IOException {
+        TTable table = readHeader(in, storage);
+        readRows(in, table);
+        return table;
+    }
+
+    /**
+     * Reads the header and schema of a table, leaving the stream positioned at the first row block.
+     * @param storage Creates the list the rows will be read into for the id of the table
+     */
+    public static TTable readHeader(DataInputStream in, Function<UUID, List<Object[]>> storage) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a table file");
+        short formatVersion = in.readShort();
+        if (formatVersion > FORMAT_VERSION) throw new IOException("Unsupported table format version " + formatVersion);
+
+        UUID uniqueID = new UUID(in.readLong(), in.readLong());
+        String name = RowCodec.readString(in);
+        String dataBase = RowCodec.readString(in);
+        TTable table = new TTable(uniqueID, name, dataBase, storage.apply(uniqueID));
+        table.setVersion(in.readLong());
+
+        int columnCount = in.readInt();
+        for (int i = 0; i < columnCount; i++) {
+            TColumn c = new TColumn(table, RowCodec.readString(in), TColumnType.valueOf(RowCodec.readString(in)));
+            c.setSize(in.readInt());
+            c.setDecimals(in.readInt());
+            c.setIncrementValue(in.readInt());
+            int flags = in.readByte();
+            c.setAutoIncrement((flags & FLAG_AUTO_INCREMENT) != 0);
+            c.setNotNull((flags & FLAG_NOT_NULL) != 0);
+            c.setUnique((flags & FLAG_UNIQUE) != 0);
+            if ((flags & FLAG_HASH_INDEX) != 0) c.setIndex(IndexType.HASH);
+            if ((flags & FLAG_ORDERED_INDEX) != 0) c.setIndex(IndexType.ORDERED);
+            c.setDefaultValue(RowCodec.readValue(in));
+            table.addColumn(c);
+        }
+        return table;
+    }
+
+    /**
+     * Reads all row blocks into the storage of a table whose header has been read already.
+     */
+    public static void readRows(DataInputStream in, TTable table) throws IOException {
+        List<TColumn> columns = table.getColumns();
+        List<Object[]> data = table.getData();
+        int rows;
+        while ((rows = in.readInt()) > 0) {
+            in.readInt(); // byte length, only needed to skip blocks
+            for (int i = 0; i < rows; i++) data.add(readRow(in, columns));
+        }
+        table.rebuildIndexes();
+    }
+
+    private static void writeRow(DataOutputStream out, List<TColumn> columns, Object[] row) throws IOException {
+        byte[] nulls = new byte[(columns.size() + 7) / 8];
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            try {
+                values[i] = coerce(columns.get(i).getType(), i < row.length ? row[i] : null);
+            } catch (IllegalArgumentException e) {
+                // Failing the save keeps the previous file and the table dirty, instead of losing the value
+                throw new IOException("Cannot write value of column " + columns.get(i).getName() + ": " + e.getMessage(), e);
+            }
+            if (values[i] == null) nulls[i / 8] |= (byte) (1 << (i % 8));
+        }
+        out.write(nulls);
+        for (int i = 0; i < columns.size(); i++) {
+            if (values[i] != null) writeValue(out, columns.get(i).getType(), values[i]);
+        }
+    }
+
+    private static Object[] readRow(DataInputStream in, List<TColumn> columns) throws IOException {
+        byte[] nulls = new byte[(columns.size() + 7) / 8];
+        in.readFully(nulls);
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            if ((nulls[i / 8] & (1 << (i % 8))) != 0) continue;
+            row[i] = readValue(in, columns.get(i).getType());
+        }
+        return row;
+    }
+
+    private static void writeValue(DataOutputStream out, TColumnType type, Object value) throws IOException {
+        switch (type) {
+            case INTEGER -> out.writeInt((Integer) value);
+            case DECIMAL -> out.writeDouble((Double) value);
+            case BOOLEAN -> out.writeBoolean((Boolean) value);
+            case UNIQUE_IDENTIFIER -> {
+                UUID uuid = (UUID) value;
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+            case DATE, TIME, DATETIME -> out.writeLong((Long) value);
+            case TEXT, CHAR, FILE -> RowCodec.writeString(out, (String) value);
+        }
+    }
+
+    private static Object readValue(DataInputStream in, TColumnType type) throws IOException {
+        return switch (type) {
+            case INTEGER -> in.readInt();
+            case DECIMAL -> in.readDouble();
+            case BOOLEAN -> in.readBoolean();
+            case UNIQUE_IDENTIFIER -> new UUID(in.readLong(), in.readLong()).toString();
+            case DATE, TIME, DATETIME -> new JsonDate(new Date(in.readLong()));
+            case CHAR -> {
+                String value = RowCodec.readString(in);
+                yield value.length() == 1 ? value.charAt(0) : value;
+            }
+            case TEXT, FILE -> RowCodec.readString(in);
+        };
+    }
+
+    /**
+     * Converts a row value into the representation written for the column type.
+     * @return The converted value or {@code null} if the value is missing
+     * @throws IllegalArgumentException If the value does not match the column type
+     */
+    static Object coerce(TColumnType type, Object value) throws IllegalArgumentException {
+        if (value == null) return null;
+        return switch (type) {
+            case INTEGER -> {
+                if (value instanceof Number n && n.doubleValue() == n.intValue()) yield n.intValue();
+                yield Integer.parseInt(value.toString());
+            }
+            case DECIMAL -> value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString());
+            case BOOLEAN -> {
+                if (value instanceof Boolean b) yield b;
+                if (value.toString().equalsIgnoreCase("true") || value.toString().equalsIgnoreCase("false")) yield Boolean.parseBoolean(value.toString());
+                throw new IllegalArgumentException("Value " + value + " does not match column type " + type);
+            }
+            case UNIQUE_IDENTIFIER -> UUID.fromString(value.toString());
+            case DATE, TIME, DATETIME -> {
+                if (value instanceof JsonDate d && d.getDate() != null) yield d.getDate().getTime();
+                if (value instanceof Date d) yield d.getTime();
+                if (value instanceof Long l) yield l;
+                throw new IllegalArgumentException("Value " + value + " does not match column type " + type);
+            }
+            case CHAR -> {
+                if (value.toString().length() == 1) yield value.toString();
+                throw new IllegalArgumentException("Value " + value + " does not match column type " + type);
+            }
+            case TEXT, FILE -> value.toString();
+        };
+    }
+}
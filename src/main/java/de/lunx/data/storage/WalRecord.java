@@ -0,0 +1,52 @@
+package de.lunx.data.storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A single row-level change of a table.
+ *
+ * @param operation The kind of change
+ * @param table     The unique id of the changed table
+ * @param version   The table version this change produces
+ * @param row       The index of the changed row, or {@code -1} if the change is not bound to a row
+ * @param data      The full row after the change, {@code null} for deletions and truncations
+ */
+public record WalRecord(Operation operation, UUID table, long version, int row,
+                        @Nullable Map<String, Object> data) {
+
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(operation.ordinal());
+            out.writeLong(table.getMostSignificantBits());
+            out.writeLong(table.getLeastSignificantBits());
+            out.writeLong(version);
+            out.writeInt(row);
+            out.writeBoolean(data != null);
+            if (data != null) RowCodec.writeRow(out, data);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static WalRecord decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            Operation operation = Operation.values()[in.readByte()];
+            UUID table = new UUID(in.readLong(), in.readLong());
+            long version = in.readLong();
+            int row = in.readInt();
+            Map<String, Object> data = in.readBoolean() ? RowCodec.readRow(in) : null;
+            return new WalRecord(operation, table, version, row, data);
+        }
+    }
+
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE,
+        TRUNCATE
+    }
+}
@@ -0,0 +1,266 @@
+package de.lunx.data.storage;
+
+import de.lunx.data.EncryptUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static de.lunx.Main.printStackTraceLevel;
+
+/**
+ * Append-only log of row changes for one database, split into numbered segment files.
+ *
+ * <p>Every record is stored as {@code [length][crc32][encrypted payload]}. A checkpoint first
+ * {@link #startSegment() starts a new segment}, then writes the table snapshots and finally
+ * {@link #deleteSegmentsBefore(long) deletes} the segments before it. Records that are already
+ * contained in a snapshot are skipped on replay by comparing the table versions.</p>
+ *
+ * <p>Appending does not force the data to disk. Positions returned by {@link #append(WalRecord)}
+ * grow across segments and can be passed to {@link #sync(long)}, which lets concurrent writers
+ * share a single fsync.</p>
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    private static final String SUFFIX = ".wal";
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+
+    private final File directory;
+    private final String database;
+    private final long maxSegmentBytes;
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long segment;
+
+    private volatile long writtenPosition;
+    private volatile long syncedPosition;
+
+    /**
+     * @param maxSegmentBytes The size after which a new segment is started
+     */
+    public WriteAheadLog(File directory, String database, long maxSegmentBytes) throws IOException {
+        if (directory.mkdirs()) log.debug("Created log directory.");
+        this.directory = directory;
+        this.database = database;
+        this.maxSegmentBytes = maxSegmentBytes;
+        List<Long> segments = segments();
+        this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.channel = open(segmentFile(segment));
+    }
+
+    /**
+     * Appends a record to the log without waiting for the disk.
+     * @param record The change to persist
+     * @return The log position after the record
+     * @throws IOException If the record could not be written
+     */
+    public synchronized long append(WalRecord record) throws IOException {
+        return append(List.of(record));
+    }
+
+    /**
+     * Appends several records to the log without waiting for the disk. The records are buffered
+     * and written together instead of one write per record.
+     * @param records The changes to persist, oldest first
+     * @return The log position after the last record
+     * @throws IOException If the records could not be written
+     */
+    public synchronized long append(List<WalRecord> records) throws IOException {
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(pending);
+        for (WalRecord record : records) {
+            if (channel.size() + pending.size() >= maxSegmentBytes) {
+                write(pending);
+                startSegment();
+            }
+            byte[] payload = EncryptUtil.encryptBytes(record.encode());
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+            if (pending.size() >= WRITE_BUFFER_BYTES) write(pending);
+        }
+        write(pending);
+        return writtenPosition;
+    }
+
+    private void write(ByteArrayOutputStream pending) throws IOException {
+        if (pending.size() == 0) return;
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) channel.write(buffer);
+        writtenPosition += buffer.limit();
+        pending.reset();
+    }
+
+    /**
+     * Forces the log to disk up to at least the given position. If another thread already synced
+     * past it, this returns immediately, so one fsync covers every record written before it.
+     * @param position A position returned by {@link #append(WalRecord)}
+     */
+    public void sync(long position) throws IOException {
+        if (syncedPosition >= position) return;
+        synchronized (syncLock) {
+            if (syncedPosition >= position) return;
+            long target = writtenPosition;
+            channel.force(false);
+            syncedPosition = target;
+        }
+    }
+
+    /**
+     * Forces everything written so far to disk.
+     */
+    public void sync() throws IOException {
+        sync(writtenPosition);
+    }
+
+    /**
+     * Reads all intact records of the given segment and the ones after it, oldest first.
+     * A torn or corrupted tail of the active segment is cut off.
+     * @param fromSegment The first segment to read
+     * @param action Called for every record
+     * @return The number of records read
+     */
+    public synchronized int replay(long fromSegment, Consumer<WalRecord> action) throws IOException {
+        int records = 0;
+        for (long s : segments()) {
+            if (s < fromSegment || s == segment) continue;
+            try (FileChannel old = FileChannel.open(segmentFile(s).toPath(), StandardOpenOption.READ)) {
+                records += read(old, s, action);
+                if (old.position() < old.size()) log.warn("Segment {} of log {} is damaged", s, database);
+            }
+        }
+        channel.position(0);
+        records += read(channel, segment, action);
+        if (channel.position() < channel.size()) {
+            log.warn("Discarding {} bytes of incomplete log records in segment {} of log {}",
+                    channel.size() - channel.position(), segment, database);
+            channel.truncate(channel.position());
+        }
+        channel.position(channel.size());
+        return records;
+    }
+
+    /**
+     * Closes the active segment and starts a new one.
+     * @return The number of the new segment. Every record appended later is part of it or a later segment.
+     */
+    public synchronized long startSegment() throws IOException {
+        synchronized (syncLock) {
+            channel.force(false);
+            syncedPosition = writtenPosition;
+            channel.close();
+            segment++;
+            channel = open(segmentFile(segment));
+        }
+        return segment;
+    }
+
+    /**
+     * Deletes all segments before the given one, after their records have been included in a checkpoint.
+     */
+    public synchronized void deleteSegmentsBefore(long segment) {
+        for (long s : segments()) {
+            if (s >= segment) break;
+            File f = segmentFile(s);
+            if (!f.delete()) log.warn("Could not delete {}", f.getName());
+        }
+    }
+
+    /**
+     * @return The combined size of all segments in bytes
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (long s : segments()) size += segmentFile(s).length();
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        synchronized (syncLock) {
+            channel.close();
+        }
+    }
+
+    private List<Long> segments() {
+        List<Long> segments = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.length() > database.length() + 1 + SUFFIX.length()
+                && name.startsWith(database + ".") && name.endsWith(SUFFIX));
+        if (files == null) return segments;
+        for (File f : files) {
+            String number = f.getName().substring(database.length() + 1, f.getName().length() - SUFFIX.length());
+            try {
+                segments.add(Long.parseLong(number));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, database + "." + String.format("%016d", segment) + SUFFIX);
+    }
+
+    private int read(FileChannel source, long segment, Consumer<WalRecord> action) throws IOException {
+        int records = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (true) {
+            long start = source.position();
+            header.clear();
+            if (readFully(source, header) < 8) {
+                source.position(start);
+                return records;
+            }
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || start + 8 + length > source.size()) {
+                source.position(start);
+                return records;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(source, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Checksum mismatch in segment {} of log {} at position {}", segment, database, start);
+                source.position(start);
+                return records;
+            }
+            try {
+                action.accept(WalRecord.decode(EncryptUtil.decryptBytes(payload.array())));
+            } catch (Exception e) {
+                printStackTraceLevel(log, System.Logger.Level.WARNING, e);
+                source.position(start);
+                return records;
+            }
+            records++;
+        }
+    }
+
+    private static int readFully(FileChannel source, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer);
+            if (read < 0) break;
+            total += read;
+        }
+        return total;
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+}
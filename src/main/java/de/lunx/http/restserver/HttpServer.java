@@ -9,11 +9,19 @@ import de.lunx.auth.AuthManager;
 import de.lunx.auth.User;
 import de.lunx.data.Configuration;
 import de.lunx.data.DataManager;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import de.lunx.querying.BulkLoader;
 import de.lunx.querying.QueryParser;
 import io.javalin.Javalin;
+import io.javalin.http.ContentType;
 import io.javalin.http.HttpStatus;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
@@ -64,7 +72,7 @@ public class HttpServer {
                     ctx.result(o.toString());
                 })
                 .before(ctx -> {
-                    if (ctx.url().contains("auth")) return;
+                    if (ctx.path().equals("/auth")) return;
                     String token = ctx.header("Authorization");
                     if (token == null) {
                         ctx.result(QueryError.error("Token missing",
@@ -83,7 +91,42 @@ public class HttpServer {
                     }
                 })
                 .post("/query", ctx -> {
-                    ctx.result(QueryParser.parseQuery(ctx.body()));
+                    // Written while serializing, so large result sets are sent in chunks instead of one string
+                    ctx.contentType(ContentType.APPLICATION_JSON);
+                    QueryParser.writeQuery(ctx.body(), ctx.outputStream());
+                })
+                .post("/batch", ctx -> {
+                    // Several queries in one request, verified once by the before handler
+                    ctx.contentType(ContentType.APPLICATION_JSON);
+                    Writer out = new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8);
+                    QueryParser.writeBatch(ctx.body(), out);
+                })
+                .post("/bulk/{database}/{table}", ctx -> {
+                    // The body is read as a stream, so files of any size are loaded without buffering them
+                    TDatabase database = DataManager.getInstance().getDatabase(ctx.pathParam("database"));
+                    TTable table = database == null ? null : database.findTable(ctx.pathParam("table"));
+                    if (table == null) {
+                        ctx.status(HttpStatus.NOT_FOUND);
+                        ctx.result(QueryError.error("Table not found", "This table does not exist."));
+                        return;
+                    }
+                    BulkLoader loader;
+                    try {
+                        loader = new BulkLoader(database, table, BulkLoader.Format.of(ctx.queryParam("format"), ctx.contentType()),
+                                Configuration.getInstance().getBulkLoadBatchSize());
+                    } catch (IllegalArgumentException ex) {
+                        ctx.status(badRequest);
+                        ctx.result(QueryError.error("Invalid format", "Supported formats are ndjson and csv."));
+                        return;
+                    }
+                    ctx.contentType("application/x-ndjson");
+                    Writer out = new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8);
+                    try {
+                        loader.load(new InputStreamReader(ctx.bodyInputStream(), StandardCharsets.UTF_8), out);
+                    } catch (IllegalArgumentException ex) {
+                        ctx.status(badRequest);
+                        ctx.result(QueryError.error("Invalid header", ex.getMessage()));
+                    }
                 })
                 .start(Configuration.getInstance().getPort());
         log.info("Started HTTP server on port {}", Configuration.getInstance().getPort());
@@ -0,0 +1,295 @@
+package de.lunx.querying;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import de.lunx.data.DataManager;
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TColumn;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static de.lunx.Main.printStackTraceLevel;
+
+/**
+ * Loads rows into a table from a stream of NDJSON objects or CSV records.
+ *
+ * <p>Rows are read and converted one at a time with the types of the table's columns, so memory use
+ * does not grow with the size of the input. Valid rows are appended and logged in batches, each
+ * batch under one table lock with a single commit. Rows that cannot be converted or do not fit
+ * their columns are rejected and skipped without stopping the load.</p>
+ *
+ * <p>Progress is written as one JSON object per line after every batch, followed by a summary
+ * holding the first {@value #MAX_REPORTED_REJECTIONS} rejected rows and why they were rejected.</p>
+ */
+@Slf4j
+public class BulkLoader {
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private final TDatabase database;
+    private final TTable table;
+    private final Format format;
+    private final int batchSize;
+
+    private long loaded;
+    private long rejected;
+    private final JsonArray rejections = new JsonArray();
+
+    /**
+     * @param batchSize The number of rows appended and committed together
+     */
+    public BulkLoader(TDatabase database, TTable table, Format format, int batchSize) {
+        this.database = database;
+        this.table = table;
+        this.format = format;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Loads all rows of the input.
+     * @param source The NDJSON or CSV input, it is not closed
+     * @param out The writer the progress is reported to, it is flushed but not closed
+     * @throws IllegalArgumentException If the header of CSV input names a column the table does not have.
+     *                                  Nothing has been loaded or written then.
+     * @throws IOException If the rows of the table could not be loaded, the input could not be read or the progress could not be written
+     */
+    public void load(Reader source, Writer out) throws IllegalArgumentException, IOException {
+        // The table stays loaded for the whole load, so no batch is appended to an unloaded table
+        if (!DataManager.getInstance().acquire(table)) throw new IOException("Could not load rows of table " + table.getName());
+        try {
+            read(source, out);
+        } catch (UncheckedIOException ex) {
+            // The batch could not be logged or synced, the rows of the batches before it stay loaded
+            log.error("Bulk load into table {} failed: {}", table.getName(), ex.getMessage());
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+            report(out, TQuery.QueryResultType.FAILED);
+        } finally {
+            table.release();
+        }
+    }
+
+    private void read(Reader source, Writer out) throws IllegalArgumentException, IOException {
+        BufferedReader in = new BufferedReader(source, 64 * 1024);
+        List<TColumn> columns = table.getColumns();
+        int[] header = format == Format.CSV ? readHeader(in) : null;
+
+        List<Object[]> batch = new ArrayList<>(Math.min(batchSize, 10_000));
+        long row = 0;
+        while (true) {
+            Object[] values;
+            if (format == Format.CSV) {
+                List<String> record = readRecord(in);
+                if (record == null) break;
+                row++;
+                if (record.size() == 1 && record.get(0).isEmpty()) continue;
+                try {
+                    values = convertRecord(record, header, columns);
+                    table.validateRows(List.<Object[]>of(values));
+                } catch (IllegalArgumentException ex) {
+                    reject(row, ex);
+                    continue;
+                }
+            } else {
+                String line = in.readLine();
+                if (line == null) break;
+                row++;
+                if (line.isBlank()) continue;
+                try {
+                    values = convertObject(JsonParser.parseString(line).getAsJsonObject(), columns);
+                    table.validateRows(List.<Object[]>of(values));
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException | JsonParseException ex) {
+                    reject(row, ex);
+                    continue;
+                }
+            }
+            batch.add(values);
+            if (batch.size() >= batchSize) {
+                append(batch);
+                report(out, null);
+            }
+        }
+        if (!batch.isEmpty()) append(batch);
+        report(out, TQuery.QueryResultType.SUCCESS);
+    }
+
+    private void append(List<Object[]> batch) {
+        long position;
+        synchronized (table) {
+            position = DataManager.getInstance().logInserts(table, table.getRowCount(), batch);
+            table.addRows(batch);
+        }
+        ResultCache.getInstance().invalidate(table);
+        DataManager.getInstance().commit(database, position);
+        loaded += batch.size();
+        batch.clear();
+    }
+
+    private void reject(long row, Exception ex) {
+        rejected++;
+        if (rejections.size() >= MAX_REPORTED_REJECTIONS) return;
+        JsonObject rejection = new JsonObject();
+        rejection.addProperty("row", row);
+        rejection.addProperty("error", ex.getMessage());
+        rejections.add(rejection);
+    }
+
+    /**
+     * @param result The result of the load once it is done, {@code null} to report the progress of a batch
+     */
+    private void report(Writer out, @Nullable TQuery.QueryResultType result) throws IOException {
+        JsonObject o = new JsonObject();
+        if (result != null) o.addProperty("result", result.name());
+        o.addProperty("loaded", loaded);
+        o.addProperty("rejected", rejected);
+        if (result != null) o.add("rejections", rejections);
+        out.write(o + "\n");
+        out.flush();
+    }
+
+    private int[] readHeader(BufferedReader in) throws IllegalArgumentException, IOException {
+        List<String> names = readRecord(in);
+        if (names == null) return new int[0];
+        int[] ordinals = new int[names.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            String name = names.get(i).trim();
+            ordinals[i] = table.indexOf(name);
+            if (ordinals[i] < 0) throw new IllegalArgumentException("\"" + name + "\" is not present in target table " + table.getName());
+        }
+        return ordinals;
+    }
+
+    private Object[] convertObject(JsonObject object, List<TColumn> columns) throws IllegalArgumentException {
+        Object[] values = new Object[columns.size()];
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            int column = table.indexOf(entry.getKey());
+            if (column < 0) throw new IllegalArgumentException("\"" + entry.getKey() + "\" is not present in target table " + table.getName());
+            if (!entry.getValue().isJsonNull()) values[column] = TQuery.convertJsonObj(entry.getValue(), columns.get(column).getType());
+        }
+        return values;
+    }
+
+    private static Object[] convertRecord(List<String> record, int[] header, List<TColumn> columns) throws IllegalArgumentException {
+        if (record.size() != header.length) {
+            throw new IllegalArgumentException("Expected " + header.length + " fields, found " + record.size());
+        }
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < header.length; i++) {
+            String field = record.get(i);
+            // Empty fields are missing values, which get the default value of their column
+            if (!field.isEmpty()) values[header[i]] = convertText(field, columns.get(header[i]));
+        }
+        return values;
+    }
+
+    /**
+     * Converts a CSV field to the type of its column.
+     * @throws IllegalArgumentException If the field cannot be converted
+     */
+    private static Object convertText(String field, TColumn column) throws IllegalArgumentException {
+        TColumnType type = column.getType();
+        switch (type) {
+            case INTEGER -> {
+                return Integer.parseInt(field.trim());
+            }
+            case DECIMAL -> {
+                return Double.parseDouble(field.trim());
+            }
+            case BOOLEAN -> {
+                if (field.trim().equalsIgnoreCase("true")) return true;
+                if (field.trim().equalsIgnoreCase("false")) return false;
+                throw new IllegalArgumentException("Invalid boolean " + field + " in column " + column.getName());
+            }
+            case CHAR -> {
+                if (field.length() != 1) throw new IllegalArgumentException("Invalid character " + field + " in column " + column.getName());
+                return field.charAt(0);
+            }
+            case DATE, TIME, DATETIME -> {
+                // Dates are given as epoch milliseconds or ISO-8601 timestamps
+                try {
+                    if (field.trim().chars().allMatch(Character::isDigit)) return new JsonDate(new Date(Long.parseLong(field.trim())));
+                    return new JsonDate(Date.from(OffsetDateTime.parse(field.trim()).toInstant()));
+                } catch (DateTimeParseException ex) {
+                    throw new IllegalArgumentException("Invalid date " + field + " in column " + column.getName(), ex);
+                }
+            }
+            default -> {
+                return field;
+            }
+        }
+    }
+
+    /**
+     * Reads one CSV record. Fields may be quoted with {@code "}, quoted fields may contain
+     * separators, line breaks and quotes written as {@code ""}.
+     * @return The fields of the record, or {@code null} at the end of the input
+     */
+    @Nullable
+    private static List<String> readRecord(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) break;
+                // A line break inside a quoted field
+                line = in.readLine();
+                if (line == null) break;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public enum Format {
+        NDJSON,
+        CSV;
+
+        /**
+         * @param format The requested format, e.g. {@code csv}, or {@code null} to derive it from the content type
+         * @param contentType The content type of the request, may be {@code null}
+         * @throws IllegalArgumentException If the format is unknown
+         */
+        public static Format of(@Nullable String format, @Nullable String contentType) throws IllegalArgumentException {
+            if (format != null) return valueOf(format.toUpperCase());
+            return contentType != null && contentType.toLowerCase().startsWith("text/csv") ? CSV : NDJSON;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package de.lunx.querying;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.lunx.data.Configuration;
+import de.lunx.data.DataManager;
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import de.lunx.querying.aggregate.Aggregation;
+import de.lunx.querying.filter.Expression;
+import de.lunx.querying.plan.Cursor;
+import de.lunx.querying.plan.QueryPlanner;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A query compiled once by {@link TQuery.Type#PREPARE} and run many times by {@link TQuery.Type#EXECUTE}.
+ *
+ * <p>Preparing resolves the database, table and columns of the query and parses its filter, conditions,
+ * order, aggregates and values. Values may be parameters written as {@code {"param": "name"}}, which are
+ * bound to the values given on execution. Executing only binds the parameters and plans the access to the
+ * rows, as that depends on the bound values and the current statistics of the table.</p>
+ *
+ * <p>Prepared queries are kept in a cache of {@link Configuration#getPreparedQueryCacheSize()} queries.
+ * A query is dropped when the columns of its table change or the table is deleted, see {@link TTable#getSchemaVersion()}.</p>
+ */
+public class PreparedQuery {
+    private static final Gson GSON = new Gson();
+    private static final Map<String, PreparedQuery> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Getter
+    private final String name;
+    @Getter
+    private final TQuery.Type type;
+    private final TDatabase database;
+    private final TTable table;
+    private final int schemaVersion;
+    /**
+     * The names of the parameters in the order they first appear in the query
+     */
+    @Getter
+    private final Set<String> parameters = new LinkedHashSet<>();
+
+    @Nullable
+    private final Expression filter;
+    private final List<QueryCondition> conditions;
+    /**
+     * The order, columns and limit of a {@link TQuery.Type#GET_DATA} query
+     */
+    @Nullable
+    private QueryPlanner shape;
+    @Nullable
+    private Aggregation aggregation;
+    private final List<Object[]> rows = new ArrayList<>();
+    private final List<String> columns = new ArrayList<>();
+    private Object[] values = new Object[0];
+
+    /**
+     * @param query The query to prepare, one of {@link TQuery.Type#GET_DATA}, {@link TQuery.Type#AGGREGATE},
+     *              {@link TQuery.Type#INSERT_DATA}, {@link TQuery.Type#UPDATE_DATA} or {@link TQuery.Type#DELETE_DATA}
+     * @throws IllegalArgumentException If the query is invalid, e.g. names a column the table does not have
+     */
+    public PreparedQuery(String name, TQuery.Type type, TDatabase database, TTable table, JsonObject query) throws IllegalArgumentException {
+        this.name = name;
+        this.type = type;
+        this.database = database;
+        this.table = table;
+        this.schemaVersion = table.getSchemaVersion();
+
+        Expression parsed = TQuery.parseFilter(query);
+        filter = parsed == null ? null : parsed.map(this::parameterize);
+        conditions = TQuery.parseConditions(query).stream().map(this::parameterize).toList();
+        switch (type) {
+            case GET_DATA -> shape = TQuery.shape(new QueryPlanner(table), query);
+            case AGGREGATE -> aggregation = TQuery.parseAggregation(query);
+            case INSERT_DATA -> {
+                JsonArray array = query.has("rows") ? query.get("rows").getAsJsonArray() : new JsonArray();
+                for (JsonElement rE : array) rows.add(parseRow(rE.getAsJsonObject()));
+            }
+            case UPDATE_DATA, DELETE_DATA -> {
+                Map<String, Object> updates = new LinkedHashMap<>();
+                for (JsonElement uE : query.get("updates").getAsJsonArray()) {
+                    JsonObject ob = uE.getAsJsonObject();
+                    TColumnType columnType = TColumnType.valueOf(ob.get("type").getAsString().toUpperCase());
+                    // Deleting clears the listed columns instead of setting them
+                    updates.put(ob.get("name").getAsString(), type == TQuery.Type.DELETE_DATA ? null : value(ob.get("value"), columnType));
+                }
+                columns.addAll(updates.keySet());
+                values = updates.values().toArray();
+            }
+            default -> throw new IllegalArgumentException("Queries of type " + type + " cannot be prepared");
+        }
+    }
+
+    /**
+     * Adds a prepared query to the cache, replacing one of the same name. The least recently used
+     * queries are dropped once the cache is full.
+     */
+    public static void register(PreparedQuery query) {
+        int capacity = Math.max(1, Configuration.getInstance().getPreparedQueryCacheSize());
+        synchronized (CACHE) {
+            CACHE.put(query.name, query);
+            Iterator<PreparedQuery> iterator = CACHE.values().iterator();
+            while (CACHE.size() > capacity) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The prepared query, or {@code null} if it is unknown, was dropped from the cache or the columns of its table changed
+     */
+    @Nullable
+    public static PreparedQuery get(String name) {
+        synchronized (CACHE) {
+            PreparedQuery query = CACHE.get(name);
+            if (query != null && query.table.getSchemaVersion() != query.schemaVersion) {
+                CACHE.remove(name);
+                return null;
+            }
+            return query;
+        }
+    }
+
+    /**
+     * @return Whether an update or deletion would change every row of the table
+     */
+    public boolean isUnfiltered() {
+        return filter == null && conditions.isEmpty();
+    }
+
+    /**
+     * Binds the parameters and runs the query.
+     * @param params The value of every parameter
+     * @param cursor The cursor of the page to continue, only used by {@link TQuery.Type#GET_DATA} queries
+     * @throws IllegalArgumentException If a parameter has no value or a value that does not fit its column
+     */
+    public TQuery.QueryResult execute(Map<String, JsonElement> params, @Nullable Cursor cursor) throws IllegalArgumentException {
+        if (!DataManager.getInstance().acquire(table)) {
+            return new TQuery.QueryResult(TQuery.QueryResultType.UNKNOWN_TABLE, type, 0);
+        }
+        try {
+            Expression boundFilter = filter == null || parameters.isEmpty() ? filter : filter.map(c -> bind(c, params));
+            List<QueryCondition> boundConditions = parameters.isEmpty() ? conditions : conditions.stream().map(c -> bind(c, params)).toList();
+            return switch (type) {
+                case GET_DATA -> TQuery.getData(type, table, new QueryPlanner(shape).where(boundFilter, boundConditions).after(cursor), cursor);
+                case AGGREGATE -> TQuery.aggregate(type, table, new QueryPlanner(table).where(boundFilter, boundConditions), aggregation);
+                case INSERT_DATA -> {
+                    List<Object[]> bound = new ArrayList<>(rows.size());
+                    for (Object[] row : rows) bound.add(bind(row, params));
+                    yield TQuery.insert(type, database, table, bound);
+                }
+                default -> TQuery.update(type, database, table, boundFilter, boundConditions, columns, bind(values, params));
+            };
+        } finally {
+            table.release();
+        }
+    }
+
+    private Object[] parseRow(JsonObject row) throws IllegalArgumentException {
+        Object[] values = new Object[table.getColumns().size()];
+        for (Map.Entry<String, JsonElement> entry : row.entrySet()) {
+            int column = table.indexOf(entry.getKey());
+            if (column < 0) throw new IllegalArgumentException("\"" + entry.getKey() + "\" is not present in target table " + table.getName());
+            values[column] = value(entry.getValue(), table.getColumns().get(column).getType());
+        }
+        return values;
+    }
+
+    /**
+     * @return The converted value, or a parameter converted to the type on execution
+     */
+    @Nullable
+    private Object value(JsonElement element, TColumnType type) {
+        if (element.isJsonNull()) return null;
+        if (element.isJsonObject() && element.getAsJsonObject().size() == 1 && element.getAsJsonObject().has("param")) {
+            String parameter = element.getAsJsonObject().get("param").getAsString();
+            parameters.add(parameter);
+            return new Parameter(parameter, type);
+        }
+        return TQuery.convertJsonObj(element, type);
+    }
+
+    private QueryCondition parameterize(QueryCondition condition) {
+        List<Object> values = condition.getValues() == null ? null : condition.getValues().stream().map(this::parameterize).toList();
+        return condition.withValues(parameterize(condition.getValue()), parameterize(condition.getTo()), values);
+    }
+
+    /**
+     * @return A parameter if the condition value is one, otherwise the value itself
+     */
+    private Object parameterize(Object value) {
+        if (value instanceof Map<?, ?> m && m.size() == 1 && m.get("param") instanceof String parameter) {
+            parameters.add(parameter);
+            return new Parameter(parameter, null);
+        }
+        return value;
+    }
+
+    private static QueryCondition bind(QueryCondition condition, Map<String, JsonElement> params) {
+        List<Object> values = condition.getValues() == null ? null : new ArrayList<>(condition.getValues().size());
+        if (values != null) for (Object value : condition.getValues()) values.add(bind(value, params));
+        return condition.withValues(bind(condition.getValue(), params), bind(condition.getTo(), params), values);
+    }
+
+    private static Object[] bind(Object[] template, Map<String, JsonElement> params) {
+        Object[] bound = template.clone();
+        for (int i = 0; i < bound.length; i++) bound[i] = bind(bound[i], params);
+        return bound;
+    }
+
+    private static Object bind(Object value, Map<String, JsonElement> params) {
+        return value instanceof Parameter p ? p.bind(params) : value;
+    }
+
+    /**
+     * A parameter of a prepared query.
+     * @param type The type its value is converted to, {@code null} to keep condition values as parsed from JSON
+     */
+    private record Parameter(String name, @Nullable TColumnType type) {
+        @Nullable
+        Object bind(Map<String, JsonElement> params) throws IllegalArgumentException {
+            JsonElement value = params.get(name);
+            if (value == null) throw new IllegalArgumentException("No value given for parameter " + name);
+            if (value.isJsonNull()) return null;
+            return type == null ? GSON.fromJson(value, Object.class) : TQuery.convertJsonObj(value, type);
+        }
+    }
+}
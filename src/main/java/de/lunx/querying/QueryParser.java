@@ -1,26 +1,181 @@
 package de.lunx.querying;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import de.lunx.data.Configuration;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static de.lunx.Main.printStackTraceLevel;
 
 @Slf4j
 public class QueryParser {
-    private static final Gson GSON = new Gson();
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static volatile ExecutorService batchPool;
 
     public static String parseQuery(String query) {
-        JsonObject o = new JsonObject();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeQuery(query, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs a query and writes its result as UTF-8 encoded JSON. Rows of the result set are serialized one at a time
+     * straight into the stream, so no JSON of the whole result is built in memory. Results of read queries are
+     * kept in the {@link ResultCache} and written from there while their table has not changed.
+     * @param out The stream of the response, it is flushed but not closed
+     * @throws IOException If the result could not be written
+     */
+    public static void writeQuery(String query, OutputStream out) throws IOException {
+        JsonObject o = JsonParser.parseString(query).getAsJsonObject();
+        ResultCache cache = ResultCache.getInstance();
+        ResultCache.Key key = cache.key(o);
+        byte[] cached = key == null ? null : cache.get(key);
+        if (cached != null) {
+            out.write(cached);
+            out.flush();
+            return;
+        }
+
+        // The result is copied while it is written, as long as it is small enough to be cached
+        Capture capture = key == null ? null : new Capture(out, Configuration.getInstance().getResultCacheMaxEntryKb() * 1024);
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(capture == null ? out : capture, StandardCharsets.UTF_8));
+        TQuery.QueryResult result = TQuery.parse(o);
+        write(result, writer);
+        writer.flush();
+        if (capture != null && capture.copy != null && result.getType() == TQuery.QueryResultType.RESULT_SET) {
+            cache.put(key, capture.copy.toByteArray());
+        }
+    }
+
+    /**
+     * Runs several queries and writes their results as a JSON array, in the order of the queries.
+     *
+     * <p>The batch is either an array of queries or an object holding them as {@code queries}. Queries run one
+     * after another, unless the object sets {@code parallel}, which clients may only do for queries not depending
+     * on each other. These run concurrently on up to {@link Configuration#getBatchParallelism()} threads.
+     * A failing query does not stop the others.</p>
+     * @param out The writer of the response, it is flushed but not closed
+     * @throws IOException If the results could not be written
+     */
+    public static void writeBatch(String batch, Writer out) throws IOException {
+        JsonElement body = JsonParser.parseString(batch);
+        JsonArray queries;
+        boolean parallel = false;
+        if (body.isJsonArray()) {
+            queries = body.getAsJsonArray();
+        } else {
+            JsonObject o = body.getAsJsonObject();
+            queries = o.has("queries") ? o.get("queries").getAsJsonArray() : new JsonArray();
+            parallel = o.has("parallel") && o.get("parallel").getAsBoolean();
+        }
+
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        if (parallel && queries.size() > 1) {
+            ExecutorService pool = batchPool();
+            List<CompletableFuture<TQuery.QueryResult>> results = new ArrayList<>(queries.size());
+            // Rows are produced on the pool, so the queries do not wait for each other while their results are written
+            for (JsonElement query : queries) results.add(CompletableFuture.supplyAsync(() -> run(query, true), pool));
+            // Results are written as soon as they and all before them are done
+            for (CompletableFuture<TQuery.QueryResult> result : results) write(result.join(), writer);
+        } else {
+            for (JsonElement query : queries) write(run(query, false), writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
 
-        TQuery.QueryResult result = TQuery.parse(query);
+    /**
+     * @param buffered Whether the rows of the result are produced right away instead of while they are written
+     */
+    private static TQuery.QueryResult run(JsonElement query, boolean buffered) {
+        try {
+            TQuery.QueryResult result = TQuery.parse(query.getAsJsonObject());
+            return buffered ? result.buffered() : result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, e);
+            return new TQuery.QueryResult(TQuery.QueryResultType.FAILED, TQuery.Type.UNKNOWN, 0);
+        }
+    }
+
+    private static void write(TQuery.QueryResult result, JsonWriter writer) throws IOException {
         TQuery.Type type = result.getQueryType();
+        writer.beginObject();
+        writer.name("queryType").value(type.name());
+        writer.name("result").value(result.getType().name());
+        writer.name("changedRows").value((type.changesRows) ? result.getRowsChanged() : 0);
+        String cursor = result.getCursor();
+        if (type.returnsResultSet) {
+            writer.name("resultSet").beginArray();
+            cursor = result.writeRows(row -> GSON.toJson(row, Map.class, writer));
+            writer.endArray();
+        }
+        if (cursor != null) writer.name("cursor").value(cursor);
+        writer.endObject();
+    }
+
+    /**
+     * Passes everything written on to the response and keeps a copy of it until it exceeds a limit.
+     */
+    private static class Capture extends FilterOutputStream {
+        private final int limit;
+        @Nullable
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Capture(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) copy.write(b);
+            if (copy != null && copy.size() > limit) copy = null;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null && copy.size() + len > limit) copy = null;
+            if (copy != null) copy.write(b, off, len);
+        }
+    }
 
-        o.addProperty("queryType", type.name());
-        o.addProperty("result", result.getType().name());
-        o.addProperty("changedRows", (type.changesRows) ? result.getRowsChanged() : 0);
-        if (type.returnsResultSet) o.add("resultSet", GSON.toJsonTree(result.getResultSet()));
-        return o.toString();
+    private static ExecutorService batchPool() {
+        ExecutorService pool = batchPool;
+        if (pool != null) return pool;
+        synchronized (QueryParser.class) {
+            if (batchPool == null) {
+                int threads = Configuration.getInstance().getBatchParallelism();
+                batchPool = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), r -> {
+                    Thread thread = new Thread(r, "TobbQL-Batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return batchPool;
+        }
     }
 }
@@ -0,0 +1,178 @@
+package de.lunx.querying;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.lunx.data.Configuration;
+import de.lunx.data.DataManager;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Cache of serialized results of {@link TQuery.Type#GET_DATA} and {@link TQuery.Type#AGGREGATE} queries,
+ * keyed by the normalized query.
+ *
+ * <p>Every entry records the version of the table it was read from and is only served while the table
+ * is still at that version. Queries changing a table {@link #invalidate(TTable) drop} its entries right away.
+ * Entries are evicted least recently used first once their combined size exceeds
+ * {@link Configuration#getResultCacheSizeMb()}, results larger than {@link Configuration#getResultCacheMaxEntryKb()}
+ * are not cached.</p>
+ */
+public class ResultCache {
+    @Getter
+    private static final ResultCache instance = new ResultCache();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Set<String>> keysByTable = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Builds the cache key of a query. The version of the table is read before the query runs, so a result
+     * is never cached under an older version than the one it was read from.
+     * @return The key, or {@code null} if the query is not cached, e.g. as its table is not loaded
+     */
+    @Nullable
+    public Key key(JsonObject query) {
+        if (Configuration.getInstance().getResultCacheSizeMb() <= 0) return null;
+        if (!query.has("type") || !query.has("database") || !query.has("table")) return null;
+        String type = query.get("type").getAsString().toUpperCase();
+        if (!type.equals(TQuery.Type.GET_DATA.name()) && !type.equals(TQuery.Type.AGGREGATE.name())) return null;
+
+        TDatabase database = DataManager.getInstance().getDatabase(query.get("database").getAsString());
+        // Looking up the table must not load it, queries on unloaded tables bypass the cache
+        TTable table = database == null ? null : database.findTable(query.get("table").getAsString());
+        if (table == null || !table.isResident()) return null;
+        long version;
+        synchronized (table) {
+            version = table.getVersion();
+        }
+        JsonObject normalized = normalize(query).getAsJsonObject();
+        normalized.addProperty("type", type);
+        return new Key(normalized.toString(), table.getUniqueID(), version, table.getSchemaVersion());
+    }
+
+    /**
+     * @return The cached result, or {@code null} if there is none for the current version of the table
+     */
+    @Nullable
+    public synchronized byte[] get(Key key) {
+        Entry entry = entries.get(key.query());
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (!entry.key().table().equals(key.table()) || entry.key().version() != key.version()
+                || entry.key().schemaVersion() != key.schemaVersion()) {
+            remove(key.query());
+            invalidations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result();
+    }
+
+    public synchronized void put(Key key, byte[] result) {
+        long capacity = Configuration.getInstance().getResultCacheSizeMb() * 1024L * 1024L;
+        if (result.length > Configuration.getInstance().getResultCacheMaxEntryKb() * 1024L || result.length > capacity) return;
+        remove(key.query());
+        entries.put(key.query(), new Entry(key, result));
+        keysByTable.computeIfAbsent(key.table(), t -> new HashSet<>()).add(key.query());
+        bytes += size(key, result);
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > capacity && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            forget(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops the results read from a table, called after it has been changed.
+     */
+    public synchronized void invalidate(TTable table) {
+        Set<String> keys = keysByTable.remove(table.getUniqueID());
+        if (keys == null) return;
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) bytes -= size(entry.key(), entry.result());
+        }
+        invalidations += keys.size();
+    }
+
+    /**
+     * @return The number and size of the cached results and how often the cache was hit
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("capacityBytes", Configuration.getInstance().getResultCacheSizeMb() * 1024L * 1024L);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+
+    private void remove(String query) {
+        Entry entry = entries.remove(query);
+        if (entry != null) forget(entry);
+    }
+
+    /**
+     * Releases the size and table reference of an entry already removed from {@link #entries}.
+     */
+    private void forget(Entry entry) {
+        bytes -= size(entry.key(), entry.result());
+        Set<String> keys = keysByTable.get(entry.key().table());
+        if (keys != null && keys.remove(entry.key().query()) && keys.isEmpty()) keysByTable.remove(entry.key().table());
+    }
+
+    /**
+     * @return The approximate memory held by an entry, its result and the characters of its key
+     */
+    private static long size(Key key, byte[] result) {
+        return result.length + 2L * key.query().length();
+    }
+
+    /**
+     * Orders the keys of all objects, so queries differing only in the order of their keys share results.
+     */
+    private static JsonElement normalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject sorted = new JsonObject();
+            new TreeMap<>(element.getAsJsonObject().asMap()).forEach((name, value) -> sorted.add(name, normalize(value)));
+            return sorted;
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            for (JsonElement e : element.getAsJsonArray()) array.add(normalize(e));
+            return array;
+        }
+        return element;
+    }
+
+    /**
+     * @param query The normalized query
+     * @param table The unique id of the table the query reads
+     * @param version The version of the table before the query ran
+     * @param schemaVersion The version of the table's columns
+     */
+    public record Key(String query, UUID table, long version, int schemaVersion) {
+    }
+
+    private record Entry(Key key, byte[] result) {
+    }
+}
@@ -6,35 +6,72 @@ import de.lunx.auth.AuthManager;
 import de.lunx.auth.Permission;
 import de.lunx.auth.User;
 import de.lunx.data.DataManager;
+import de.lunx.data.JsonDate;
+import de.lunx.data.index.IndexType;
 import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TColumn;
 import de.lunx.data.obj.TColumnType;
 import de.lunx.data.obj.TDatabase;
 import de.lunx.data.obj.TTable;
+import de.lunx.data.storage.Compression;
+import de.lunx.data.storage.WalRecord;
+import de.lunx.querying.aggregate.Aggregate;
+import de.lunx.querying.aggregate.AggregateFunction;
+import de.lunx.querying.aggregate.Aggregation;
+import de.lunx.querying.filter.Expression;
+import de.lunx.querying.plan.Cursor;
+import de.lunx.querying.plan.QueryPlan;
+import de.lunx.querying.plan.QueryPlanner;
+import de.lunx.querying.plan.RowConsumer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 
 import static de.lunx.Main.printStackTraceLevel;
 
 @Slf4j
 public class TQuery {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * The number of rows of a {@link Type#GET_DATA} result read under one lock of the table while it is written
+     */
+    private static final int STREAM_BATCH_ROWS = 1024;
 
     public static QueryResult parse(String json) {
-        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
-        Type type = null;
+        return parse(JsonParser.parseString(json).getAsJsonObject());
+    }
+
+    public static QueryResult parse(JsonObject o) {
+        Type type;
         try {
             type = Type.valueOf(o.get("type").getAsString().toUpperCase());
         } catch (IllegalArgumentException ex) {
             printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
-            return new QueryResult(QueryResultType.UNKNOWN_ACTION, type, 0);
+            return new QueryResult(QueryResultType.UNKNOWN_ACTION, Type.UNKNOWN, 0);
+        }
+        // The tables a query uses stay loaded until it is done
+        List<TTable> used = new ArrayList<>(1);
+        try {
+            return run(type, o, used);
+        } catch (UncheckedIOException ex) {
+            // The change could not be logged or synced, so it is not durable
+            log.error("Query {} failed: {}", type, ex.getMessage());
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+            return new QueryResult(QueryResultType.FAILED, type, 0);
+        } finally {
+            for (TTable table : used) table.release();
         }
+    }
+
+    private static QueryResult run(Type type, JsonObject o, List<TTable> used) {
         switch (type) {
             case GET_DATA -> {
                 String dbName = o.get("database").getAsString();
@@ -44,82 +81,188 @@ public class TQuery {
                 if (database == null) {
                     return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
-                TTable table = database.getTable(tableName);
+                TTable table = acquire(database, tableName, used);
                 if (table == null)
                     return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
 
-                return new QueryResult(QueryResultType.RESULT_SET, type, 0,
-                        table.getData());
+                List<QueryCondition> conditions = parseConditions(o);
+                Cursor cursor;
+                try {
+                    cursor = parseCursor(o);
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.INVALID_CURSOR, type, 0);
+                }
+                return getData(type, table, planner(table, conditions, o, cursor), cursor);
             }
-            case CLEAR_TABLE -> {
-                String dbName = o.get("database").getAsString();
-                String tableName = o.get("table").getAsString();
-
-                TDatabase database = DataManager.getInstance().getDatabase(dbName);
+            case AGGREGATE -> {
+                TDatabase database = DataManager.getInstance().getDatabase(o.get("database").getAsString());
                 if (database == null) {
                     return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
-                TTable table = database.getTable(tableName);
+                TTable table = acquire(database, o.get("table").getAsString(), used);
                 if (table == null)
                     return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
 
-                int rows = table.getData().size();
-                table.truncate();
-                return new QueryResult(QueryResultType.SUCCESS, type, rows);
+                Aggregation aggregation;
+                try {
+                    aggregation = parseAggregation(o);
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.FAILED, type, 0);
+                }
+                return aggregate(type, table, new QueryPlanner(table).where(parseFilter(o), parseConditions(o)), aggregation);
             }
-            case UPDATE_DATA -> {
-                List<QueryCondition> conditions = new ArrayList<>();
-                for (JsonElement jE : o.get("conditions").getAsJsonArray()) {
-                    conditions.add(GSON.fromJson(jE, QueryCondition.class));
+            case PREPARE -> {
+                JsonObject query = o.get("query").getAsJsonObject();
+                Type prepared;
+                try {
+                    prepared = Type.valueOf(query.get("type").getAsString().toUpperCase());
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.UNKNOWN_ACTION, type, 0);
                 }
 
-                if (conditions.isEmpty() && DataManager.getInstance().getConfiguration().isSafeMode()) {
+                TDatabase database = DataManager.getInstance().getDatabase(query.get("database").getAsString());
+                if (database == null) {
+                    return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
+                }
+                TTable table = acquire(database, query.get("table").getAsString(), used);
+                if (table == null)
+                    return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
+
+                String name = o.has("name") ? o.get("name").getAsString() : UUID.randomUUID().toString();
+                PreparedQuery statement;
+                try {
+                    synchronized (table) {
+                        statement = new PreparedQuery(name, prepared, database, table, query);
+                    }
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.FAILED, type, 0);
+                }
+                if ((prepared == Type.UPDATE_DATA || prepared == Type.DELETE_DATA) && statement.isUnfiltered()
+                        && DataManager.getInstance().getConfiguration().isSafeMode()) {
                     return new QueryResult(QueryResultType.SAFE_MODE_ENABLED, type, 0);
                 }
+                PreparedQuery.register(statement);
 
-                String dbName = o.get("database").getAsString();
-                String tableName = o.get("table").getAsString();
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("statement", name);
+                row.put("parameters", List.copyOf(statement.getParameters()));
+                return new QueryResult(QueryResultType.RESULT_SET, type, 0, List.of(row));
+            }
+            case EXECUTE -> {
+                PreparedQuery statement = PreparedQuery.get(o.get("statement").getAsString());
+                if (statement == null) {
+                    return new QueryResult(QueryResultType.UNKNOWN_STATEMENT, type, 0);
+                }
+                Cursor cursor;
+                try {
+                    cursor = parseCursor(o);
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.INVALID_CURSOR, statement.getType(), 0);
+                }
+                try {
+                    return statement.execute(o.has("params") ? o.get("params").getAsJsonObject().asMap() : Map.of(), cursor);
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.FAILED, statement.getType(), 0);
+                }
+            }
+            case EXPLAIN -> {
+                JsonObject query = o.get("query").getAsJsonObject();
+                Type explained;
+                try {
+                    explained = Type.valueOf(query.get("type").getAsString().toUpperCase());
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.UNKNOWN_ACTION, type, 0);
+                }
+                if (explained != Type.GET_DATA && explained != Type.AGGREGATE && explained != Type.UPDATE_DATA && explained != Type.DELETE_DATA) {
+                    return new QueryResult(QueryResultType.FAILED, type, 0);
+                }
 
-                HashMap<String, Object> newData = new HashMap<>();
-                for (JsonElement uE : o.get("updates").getAsJsonArray()) {
-                    JsonObject ob = uE.getAsJsonObject();
-                    newData.put(ob.get("name").getAsString(), convertJsonObj(ob.get("value"),
-                            TColumnType.valueOf(ob.get("type").getAsString().toUpperCase())));
+                TDatabase database = DataManager.getInstance().getDatabase(query.get("database").getAsString());
+                if (database == null) {
+                    return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
+                TTable table = acquire(database, query.get("table").getAsString(), used);
+                if (table == null)
+                    return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
+
+                List<QueryCondition> conditions = parseConditions(query);
+                Cursor cursor;
+                try {
+                    cursor = parseCursor(query);
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.INVALID_CURSOR, type, 0);
+                }
+                Aggregation aggregation;
+                try {
+                    aggregation = explained == Type.AGGREGATE ? parseAggregation(query) : null;
+                } catch (IllegalArgumentException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.FAILED, type, 0);
+                }
+                List<Map<String, Object>> steps;
+                synchronized (table) {
+                    QueryPlanner planner = explained == Type.GET_DATA ? planner(table, conditions, query, cursor)
+                            : new QueryPlanner(table).where(parseFilter(query), conditions);
+                    QueryPlan plan = planner.plan();
+                    steps = aggregation == null ? plan.explain() : plan.explain("HashAggregate", aggregation.toString(),
+                            aggregation.estimateGroups(table, plan.getRoot().getEstimatedRows()));
+                }
+                return new QueryResult(QueryResultType.RESULT_SET, type, 0, steps);
+            }
+            case CLEAR_TABLE -> {
+                String dbName = o.get("database").getAsString();
+                String tableName = o.get("table").getAsString();
 
                 TDatabase database = DataManager.getInstance().getDatabase(dbName);
                 if (database == null) {
                     return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
-                TTable table = database.getTable(tableName);
+                TTable table = acquire(database, tableName, used);
                 if (table == null)
                     return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
 
-                AtomicInteger changedRows = new AtomicInteger();
-
-                table.getThroughRowsWithIndex((row, index) -> {
-                    for (QueryCondition condition : conditions) {
-                        if (row.get(condition.getColumn()).equals(condition.getValue())) {
-                            for (String col : table.getData().get(index).keySet()) {
-                                if (newData.containsKey(col)) {
-                                    row.put(col, newData.get(col));
-                                    changedRows.getAndIncrement();
-                                }
-                            }
-                        }
-                    }
-                });
-                DataManager.getInstance().save(database);
-
-                return new QueryResult(QueryResultType.SUCCESS, type, changedRows.get());
+                int rows;
+                long position;
+                synchronized (table) {
+                    rows = table.getRowCount();
+                    position = DataManager.getInstance().logChange(table, WalRecord.Operation.TRUNCATE, -1, null);
+                    table.truncate();
+                }
+                ResultCache.getInstance().invalidate(table);
+                DataManager.getInstance().commit(database, position);
+                return new QueryResult(QueryResultType.SUCCESS, type, rows);
             }
-            case DELETE_DATA -> {
-                List<QueryCondition> conditions = new ArrayList<>();
-                for (JsonElement jE : o.get("conditions").getAsJsonArray()) {
-                    conditions.add(GSON.fromJson(jE, QueryCondition.class));
+            case INSERT_DATA -> {
+                TDatabase database = DataManager.getInstance().getDatabase(o.get("database").getAsString());
+                if (database == null) {
+                    return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
+                }
+                TTable table = acquire(database, o.get("table").getAsString(), used);
+                if (table == null)
+                    return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
+
+                List<Object[]> rows;
+                try {
+                    rows = parseRows(table, o.has("rows") ? o.get("rows").getAsJsonArray() : new JsonArray());
+                } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException ex) {
+                    printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                    return new QueryResult(QueryResultType.FAILED, type, 0);
                 }
+                return insert(type, database, table, rows);
+            }
+            case UPDATE_DATA, DELETE_DATA -> {
+                List<QueryCondition> conditions = parseConditions(o);
+                Expression filter = parseFilter(o);
 
-                if (conditions.isEmpty() && DataManager.getInstance().getConfiguration().isSafeMode()) {
+                if (conditions.isEmpty() && filter == null && DataManager.getInstance().getConfiguration().isSafeMode()) {
                     return new QueryResult(QueryResultType.SAFE_MODE_ENABLED, type, 0);
                 }
 
@@ -137,28 +280,42 @@ public class TQuery {
                 if (database == null) {
                     return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
-                TTable table = database.getTable(tableName);
+                TTable table = acquire(database, tableName, used);
                 if (table == null)
                     return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
 
-                AtomicInteger changedRows = new AtomicInteger();
-
-                table.getThroughRowsWithIndex((row, index) -> {
-                    for (QueryCondition condition : conditions) {
-                        if (row.get(condition.getColumn()).equals(condition.getValue())) {
-                            for (String col : table.getData().get(index).keySet()) {
-                                if (newData.containsKey(col)) {
-                                    row.remove(col);
-                                    changedRows.getAndIncrement();
-                                }
-                            }
-                        }
-                    }
-                });
+                // Deleting clears the listed columns instead of setting them
+                Object[] values = type == Type.DELETE_DATA ? new Object[newData.size()] : newData.values().toArray();
+                return update(type, database, table, filter, conditions, List.copyOf(newData.keySet()), values);
+            }
+            case CREATE_INDEX, DROP_INDEX -> {
+                String dbName = o.get("database").getAsString();
+                String tableName = o.get("table").getAsString();
+                String column = o.get("column").getAsString();
 
-                DataManager.getInstance().save(database);
+                TDatabase database = DataManager.getInstance().getDatabase(dbName);
+                if (database == null) {
+                    return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
+                }
+                TTable table = acquire(database, tableName, used);
+                if (table == null)
+                    return new QueryResult(QueryResultType.UNKNOWN_TABLE, type, 0);
 
-                return new QueryResult(QueryResultType.SUCCESS, type, changedRows.get());
+                boolean changed;
+                synchronized (table) {
+                    TColumn c = table.getColumn(column);
+                    if (c == null || (type == Type.DROP_INDEX && c.isUnique())) {
+                        changed = false;
+                    } else if (type == Type.CREATE_INDEX) {
+                        IndexType indexType = o.has("index") ? IndexType.valueOf(o.get("index").getAsString().toUpperCase()) : IndexType.HASH;
+                        changed = table.createIndex(column, indexType);
+                    } else {
+                        changed = table.dropIndex(column);
+                    }
+                }
+                if (!changed) return new QueryResult(QueryResultType.FAILED, type, 0);
+                DataManager.getInstance().save(table);
+                return new QueryResult(QueryResultType.SUCCESS, type, 1);
             }
             case CREATE_DATABASE -> {
                 String dbName = o.get("name").getAsString();
@@ -167,6 +324,9 @@ public class TQuery {
                     charset = Charset.forName(o.get("charSet").getAsString());
                 }
                 TDatabase database = DataManager.getInstance().createDatabase(dbName, charset);
+                if (o.has("compression")) {
+                    database.setCompression(Compression.valueOf(o.get("compression").getAsString().toUpperCase()));
+                }
                 DataManager.getInstance().save(database);
                 return new QueryResult(QueryResultType.SUCCESS, type, 1);
             }
@@ -193,7 +353,7 @@ public class TQuery {
                     return new QueryResult(QueryResultType.UNKNOWN_DB, type, 0);
                 }
 
-                List<HashMap<String, Object>> tables = new ArrayList<>();
+                List<Map<String, Object>> tables = new ArrayList<>();
                 for (TTable t : database.getTables()) {
                     HashMap<String, Object> h = new HashMap<>();
                     h.put("tables", t.getName());
@@ -201,10 +361,12 @@ public class TQuery {
                 }
 
                 return new QueryResult(QueryResultType.RESULT_SET, type, 0, tables);
+            } case CACHE_STATS -> {
+                return new QueryResult(QueryResultType.RESULT_SET, type, 0, List.of(ResultCache.getInstance().stats()));
             } case GET_DATABASES -> {
                 List<TDatabase> databases = DataManager.getInstance().getDatabases();
 
-                List<HashMap<String, Object>> databaseList = new ArrayList<>();
+                List<Map<String, Object>> databaseList = new ArrayList<>();
                 for (TDatabase t : databases) {
                     HashMap<String, Object> h = new HashMap<>();
                     h.put("dbName", t.getName());
@@ -218,7 +380,275 @@ public class TQuery {
         return new QueryResult(QueryResultType.FAILED, type, 0);
     }
 
-    private static Object convertJsonObj(JsonElement element, TColumnType type) {
+    /**
+     * Looks up a table and keeps its rows loaded until the query is done.
+     * @param used The tables of the query, released once it is done
+     * @return The table, or {@code null} if it does not exist or could not be loaded
+     */
+    @Nullable
+    private static TTable acquire(TDatabase database, String name, List<TTable> used) {
+        TTable table = database.findTable(name);
+        if (table == null || !DataManager.getInstance().acquire(table)) return null;
+        used.add(table);
+        return table;
+    }
+
+    /**
+     * Runs a {@link Type#GET_DATA} query. The rows are found only once the result is
+     * {@link QueryResult#writeRows(RowConsumer) written}. They are read in batches of {@value #STREAM_BATCH_ROWS}
+     * under the table's lock and passed on after releasing it, so neither is the result set held in memory
+     * as a whole nor do slow clients block changes of the table.
+     * @param planner The planner of the query, planning happens under the table's lock
+     */
+    static QueryResult getData(Type type, TTable table, QueryPlanner planner, @Nullable Cursor cursor) {
+        synchronized (table) {
+            if (cursor != null && !planner.continues(cursor)) {
+                return new QueryResult(QueryResultType.INVALID_CURSOR, type, 0);
+            }
+        }
+        return new QueryResult(type, consumer -> {
+            // The query may be done by now, so the table is kept loaded again while its rows are written
+            if (!DataManager.getInstance().acquire(table)) throw new IllegalStateException("Could not load rows of table " + table.getName());
+            try {
+                QueryPlan plan;
+                int[] positions;
+                Cursor next;
+                int layout;
+                synchronized (table) {
+                    plan = planner.plan();
+                    positions = plan.execute(table);
+                    next = plan.nextCursor(table, positions);
+                    layout = table.getLayoutVersion();
+                }
+                List<Map<String, Object>> batch = new ArrayList<>(Math.min(positions.length, STREAM_BATCH_ROWS));
+                for (int from = 0; from < positions.length; from += STREAM_BATCH_ROWS) {
+                    synchronized (table) {
+                        // Rows truncated meanwhile are not returned, the positions no longer refer to them
+                        if (table.getLayoutVersion() != layout) break;
+                        plan.fetch(table, positions, from, Math.min(positions.length, from + STREAM_BATCH_ROWS), batch);
+                    }
+                    for (Map<String, Object> row : batch) consumer.accept(row);
+                    batch.clear();
+                }
+                return next == null ? null : next.encode();
+            } finally {
+                table.release();
+            }
+        });
+    }
+
+    /**
+     * Runs an {@link Type#AGGREGATE} query over the rows found by the planner.
+     */
+    static QueryResult aggregate(Type type, TTable table, QueryPlanner planner, Aggregation aggregation) {
+        List<Map<String, Object>> rows;
+        try {
+            synchronized (table) {
+                QueryPlan plan = planner.plan();
+                rows = aggregation.run(table, plan.execute(table));
+            }
+        } catch (IllegalArgumentException ex) {
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+            return new QueryResult(QueryResultType.FAILED, type, 0);
+        }
+        return new QueryResult(QueryResultType.RESULT_SET, type, 0, rows);
+    }
+
+    /**
+     * Appends the rows of an {@link Type#INSERT_DATA} query. The whole batch is validated before anything
+     * is appended, and logged with a single write.
+     * @param rows Rows in the layout of the table, see {@link #parseRows(TTable, JsonArray)}
+     */
+    static QueryResult insert(Type type, TDatabase database, TTable table, List<Object[]> rows) {
+        long position;
+        try {
+            synchronized (table) {
+                table.validateRows(rows);
+                // Logged first, so nothing is appended if the log cannot be written
+                position = DataManager.getInstance().logInserts(table, table.getRowCount(), rows);
+                table.addRows(rows);
+            }
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+            return new QueryResult(QueryResultType.FAILED, type, 0);
+        }
+        ResultCache.getInstance().invalidate(table);
+        DataManager.getInstance().commit(database, position);
+        return new QueryResult(QueryResultType.SUCCESS, type, rows.size());
+    }
+
+    /**
+     * Changes the rows of an {@link Type#UPDATE_DATA} or {@link Type#DELETE_DATA} query.
+     * @param columns The changed columns
+     * @param values The new value of every changed column
+     */
+    static QueryResult update(Type type, TDatabase database, TTable table, @Nullable Expression filter,
+                              List<QueryCondition> conditions, List<String> columns, Object[] values) {
+        int changedRows = 0;
+        long position = 0;
+
+        synchronized (table) {
+            // Columns are resolved once, rows are only accessed by column ordinal
+            QueryPlan plan = new QueryPlanner(table).where(filter, conditions).plan();
+            int[] conditionColumns = plan.getConditionColumns();
+            int[] updateColumns = resolveColumns(table, columns);
+            try {
+                table.validateValues(updateColumns, values);
+            } catch (IllegalArgumentException ex) {
+                printStackTraceLevel(log, System.Logger.Level.DEBUG, ex);
+                return new QueryResult(QueryResultType.FAILED, type, 0);
+            }
+            int[] matched = plan.execute(table);
+            // Changed rows are logged with one write before any is applied, so a failed write leaves the table unchanged
+            int[] positions = new int[matched.length];
+            List<Object[]> changes = new ArrayList<>();
+            for (int index : matched) {
+                // The updates are applied once per listed condition the row matches, or once if it was only selected by the filter
+                int matches = conditionColumns.length == 0 ? (filter == null ? 0 : 1)
+                        : countMatches(table, index, conditionColumns, plan.getConditions());
+                Object[] row = null;
+                boolean changed = false;
+                for (int m = 0; m < matches; m++) {
+                    if (row == null) row = table.copyValues(table.getRow(index).getValues());
+                    for (int u = 0; u < updateColumns.length; u++) {
+                        if (updateColumns[u] >= 0 && row[updateColumns[u]] != null) {
+                            row[updateColumns[u]] = values[u];
+                            changedRows++;
+                            changed = true;
+                        }
+                    }
+                }
+                if (changed) {
+                    positions[changes.size()] = index;
+                    changes.add(row);
+                }
+            }
+            positions = Arrays.copyOf(positions, changes.size());
+            position = DataManager.getInstance().logUpdates(table, positions, changes);
+            for (int i = 0; i < positions.length; i++) table.setRow(positions[i], changes.get(i));
+        }
+        if (changedRows > 0) ResultCache.getInstance().invalidate(table);
+        DataManager.getInstance().commit(database, position);
+
+        return new QueryResult(QueryResultType.SUCCESS, type, changedRows);
+    }
+
+    /**
+     * Resolves column names to their ordinals in the rows of a table.
+     * @return The ordinal of every column, {@code -1} for columns the table does not have
+     */
+    private static int[] resolveColumns(TTable table, List<String> columns) {
+        int[] indices = new int[columns.size()];
+        for (int i = 0; i < indices.length; i++) indices[i] = table.indexOf(columns.get(i));
+        return indices;
+    }
+
+    static List<QueryCondition> parseConditions(JsonObject o) {
+        List<QueryCondition> conditions = new ArrayList<>();
+        if (o.has("conditions")) {
+            for (JsonElement jE : o.get("conditions").getAsJsonArray()) {
+                conditions.add(GSON.fromJson(jE, QueryCondition.class));
+            }
+        }
+        return conditions;
+    }
+
+    /**
+     * @return The {@code where} expression of a query, or {@code null} if it has none
+     */
+    @Nullable
+    static Expression parseFilter(JsonObject o) {
+        return o.has("where") ? Expression.parse(o.get("where")) : null;
+    }
+
+    /**
+     * Reads the {@code groupBy} columns and the {@code aggregates} of an {@link Type#AGGREGATE} query.
+     * @throws IllegalArgumentException If an aggregate function is unknown
+     */
+    static Aggregation parseAggregation(JsonObject o) throws IllegalArgumentException {
+        List<String> groupBy = new ArrayList<>();
+        if (o.has("groupBy")) {
+            for (JsonElement c : o.get("groupBy").getAsJsonArray()) groupBy.add(c.getAsString());
+        }
+        List<Aggregate> aggregates = new ArrayList<>();
+        if (o.has("aggregates")) {
+            for (JsonElement jE : o.get("aggregates").getAsJsonArray()) {
+                JsonObject a = jE.getAsJsonObject();
+                AggregateFunction function = AggregateFunction.valueOf(a.get("function").getAsString().toUpperCase());
+                String column = a.has("column") ? a.get("column").getAsString() : null;
+                aggregates.add(a.has("as") ? new Aggregate(function, column, a.get("as").getAsString()) : new Aggregate(function, column));
+            }
+        }
+        return new Aggregation(groupBy, aggregates);
+    }
+
+    /**
+     * Counts the conditions a row matches.
+     */
+    private static int countMatches(TTable table, int row, int[] conditionColumns, List<QueryCondition> conditions) {
+        int matches = 0;
+        for (int c = 0; c < conditionColumns.length; c++) {
+            if (table.matches(row, conditionColumns[c], conditions.get(c))) matches++;
+        }
+        return matches;
+    }
+
+    /**
+     * @return The cursor a query continues, or {@code null} if it requests the first page
+     * @throws IllegalArgumentException If the cursor is invalid
+     */
+    @Nullable
+    static Cursor parseCursor(JsonObject o) throws IllegalArgumentException {
+        return o.has("cursor") ? Cursor.decode(o.get("cursor").getAsString()) : null;
+    }
+
+    /**
+     * Prepares the plan of a {@link Type#GET_DATA} query.
+     */
+    private static QueryPlanner planner(TTable table, List<QueryCondition> conditions, JsonObject o, @Nullable Cursor cursor) {
+        return shape(new QueryPlanner(table).where(parseFilter(o), conditions).after(cursor), o);
+    }
+
+    /**
+     * Applies the order, columns and limit of a {@link Type#GET_DATA} query to a planner.
+     */
+    static QueryPlanner shape(QueryPlanner planner, JsonObject o) {
+        if (o.has("orderBy")) {
+            JsonObject order = o.get("orderBy").getAsJsonObject();
+            planner.orderBy(order.get("column").getAsString(), order.has("descending") && order.get("descending").getAsBoolean());
+        }
+        if (o.has("columns")) {
+            List<String> columns = new ArrayList<>();
+            for (JsonElement c : o.get("columns").getAsJsonArray()) columns.add(c.getAsString());
+            planner.select(columns);
+        }
+        if (o.has("limit") || o.has("offset")) {
+            planner.limit(o.has("offset") ? Math.max(0, o.get("offset").getAsLong()) : 0,
+                    o.has("limit") ? Math.max(0, o.get("limit").getAsLong()) : Long.MAX_VALUE);
+        }
+        return planner;
+    }
+
+    /**
+     * Converts the rows of an {@link Type#INSERT_DATA} query into the layout of a table, using the types of its columns.
+     * @throws IllegalArgumentException If a row contains a column the table does not have
+     */
+    private static List<Object[]> parseRows(TTable table, JsonArray rows) throws IllegalArgumentException {
+        List<Object[]> result = new ArrayList<>(rows.size());
+        List<TColumn> columns = table.getColumns();
+        for (JsonElement rE : rows) {
+            Object[] values = new Object[columns.size()];
+            for (Map.Entry<String, JsonElement> entry : rE.getAsJsonObject().entrySet()) {
+                int column = table.indexOf(entry.getKey());
+                if (column < 0) throw new IllegalArgumentException("\"" + entry.getKey() + "\" is not present in target table " + table.getName());
+                if (!entry.getValue().isJsonNull()) values[column] = convertJsonObj(entry.getValue(), columns.get(column).getType());
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    static Object convertJsonObj(JsonElement element, TColumnType type) {
         switch (type) {
             case CHAR -> {
                 return element.getAsCharacter();
@@ -235,6 +665,15 @@ public class TQuery {
             case BOOLEAN -> {
                 return element.getAsBoolean();
             }
+            case DATE, TIME, DATETIME -> {
+                // Dates are given as epoch milliseconds or ISO-8601 timestamps
+                if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()) return new JsonDate(new Date(element.getAsLong()));
+                try {
+                    return new JsonDate(Date.from(OffsetDateTime.parse(element.getAsString()).toInstant()));
+                } catch (DateTimeParseException ex) {
+                    throw new IllegalArgumentException("Invalid date " + element, ex);
+                }
+            }
             //TODO Add others
         }
         return null;
@@ -247,22 +686,87 @@ public class TQuery {
         private final Type queryType;
         @Getter
         private final int rowsChanged;
+        /**
+         * The rows of the result set, empty if they are {@link #writeRows(RowConsumer) produced while written}
+         */
+        @Getter
+        private final List<Map<String, Object>> resultSet;
+        /**
+         * The cursor of the next page, {@code null} if there is none
+         */
         @Getter
-        private final List<HashMap<String, Object>> resultSet;
+        @Nullable
+        private final String cursor;
+        @Nullable
+        private final RowSource rows;
 
         public QueryResult(QueryResultType type, Type queryType, int rowsChanged) {
             this.type = type;
             this.queryType = queryType;
             this.rowsChanged = rowsChanged;
             resultSet = new ArrayList<>();
+            cursor = null;
+            rows = null;
         }
 
-        public QueryResult(QueryResultType type, Type queryType, int rowsChanged, List<HashMap<String, Object>> resultSet) {
+        /**
+         * A result set whose rows are produced while they are written.
+         */
+        public QueryResult(Type queryType, RowSource rows) {
+            this.type = QueryResultType.RESULT_SET;
+            this.queryType = queryType;
+            this.rowsChanged = 0;
+            this.resultSet = List.of();
+            this.cursor = null;
+            this.rows = rows;
+        }
+
+        public QueryResult(QueryResultType type, Type queryType, int rowsChanged, List<Map<String, Object>> resultSet) {
+            this(type, queryType, rowsChanged, resultSet, null);
+        }
+
+        public QueryResult(QueryResultType type, Type queryType, int rowsChanged, List<Map<String, Object>> resultSet,
+                           @Nullable String cursor) {
             this.type = type;
             this.queryType = queryType;
             this.rowsChanged = rowsChanged;
             this.resultSet = resultSet;
+            this.cursor = cursor;
+            this.rows = null;
+        }
+
+        /**
+         * Passes the rows of the result set to a consumer. Rows produced while written can only be written once.
+         * @return The cursor of the next page, {@code null} if there is none
+         */
+        @Nullable
+        public String writeRows(RowConsumer consumer) throws IOException {
+            if (rows != null) return rows.write(consumer);
+            for (Map<String, Object> row : resultSet) consumer.accept(row);
+            return cursor;
         }
+
+        /**
+         * @return A result holding all rows in memory, e.g. to produce them on another thread than the one writing them
+         */
+        public QueryResult buffered() throws IOException {
+            if (rows == null) return this;
+            List<Map<String, Object>> buffer = new ArrayList<>();
+            String next = rows.write(buffer::add);
+            return new QueryResult(type, queryType, rowsChanged, buffer, next);
+        }
+    }
+
+    /**
+     * Produces the rows of a result set while it is written.
+     */
+    @FunctionalInterface
+    public interface RowSource {
+        /**
+         * @return The cursor of the next page, {@code null} if there is none
+         */
+        @Nullable
+        String write(RowConsumer consumer) throws IOException;
     }
 
     public enum QueryResultType {
@@ -274,11 +778,20 @@ public class TQuery {
         UNKNOWN_DB,
         UNKNOWN_TABLE,
         UNKNOWN_ACTION,
+        INVALID_CURSOR,
+        /**
+         * The prepared query is unknown, evicted from the cache or invalidated by a schema change, it has to be prepared again
+         */
+        UNKNOWN_STATEMENT,
         EMPTY
     }
 
     public enum Type {
         GET_DATA(true, false),
+        EXPLAIN(true, false),
+        AGGREGATE(true, false),
+        PREPARE(true, false),
+        EXECUTE(false, false),
         GET_TABLES(true, false),
         INSERT_DATA(false, true),
         UPDATE_DATA(false, true),
@@ -288,6 +801,8 @@ public class TQuery {
         EDIT_TABLE(false, true),
         CLEAR_TABLE(false, true),
         GRANT_PERMISSION(false, true),
+        CREATE_INDEX(false, true),
+        DROP_INDEX(false, true),
         CREATE_DATABASE(false, true),
         DELETE_DATABASE(false, true),
 
@@ -297,6 +812,7 @@ public class TQuery {
         DELETE_USER(false, true),
 
         GET_DATABASES(true, false),
+        CACHE_STATS(true, false),
 
         CREATE_ROLE(false, true),
         EDIT_ROLE(false, true),
@@ -0,0 +1,211 @@
+package de.lunx.querying.aggregate;
+
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+import de.lunx.data.obj.Values;
+
+import java.util.Date;
+import java.util.function.Supplier;
+
+/**
+ * Running state of one aggregate for one group. Numeric and date columns are accumulated as primitives,
+ * other columns only support {@link AggregateFunction#COUNT}, {@link AggregateFunction#MIN} and {@link AggregateFunction#MAX}.
+ */
+abstract class Accumulator {
+
+    abstract void add(int row);
+
+    /**
+     * Adds the state of another accumulator of the same aggregate, which saw rows after the ones of this one.
+     */
+    abstract void merge(Accumulator other);
+
+    abstract Object result();
+
+    /**
+     * Creates the accumulators of an aggregate, bound to the columns and storage of a table.
+     * Must be called while holding the table's lock.
+     * @throws IllegalArgumentException If the column does not exist or does not support the function
+     */
+    static Supplier<Accumulator> factory(Aggregate aggregate, TTable table) throws IllegalArgumentException {
+        if (aggregate.column() == null) {
+            if (aggregate.function() != AggregateFunction.COUNT) {
+                throw new IllegalArgumentException(aggregate.function() + " needs a column");
+            }
+            return () -> new Count(null);
+        }
+        int column = table.indexOf(aggregate.column());
+        if (column < 0) throw new IllegalArgumentException("\"" + aggregate.column() + "\" is not present in target table " + table.getName());
+        TColumnType type = table.getColumns().get(column).getType();
+        ColumnReader reader = new ColumnReader(table, column);
+        Kind kind = switch (type) {
+            case INTEGER -> Kind.INTEGER;
+            case DECIMAL -> Kind.DECIMAL;
+            case DATE, TIME, DATETIME -> Kind.DATE;
+            default -> null;
+        };
+        return switch (aggregate.function()) {
+            case COUNT -> () -> new Count(reader);
+            case SUM, AVG -> {
+                if (kind != Kind.INTEGER && kind != Kind.DECIMAL) {
+                    throw new IllegalArgumentException(aggregate.function() + " is not supported for " + type + " columns");
+                }
+                boolean average = aggregate.function() == AggregateFunction.AVG;
+                yield () -> new Sum(reader, kind, average);
+            }
+            case MIN, MAX -> {
+                boolean max = aggregate.function() == AggregateFunction.MAX;
+                if (kind == null) yield () -> new Extreme(reader, max);
+                yield () -> new NumericExtreme(reader, kind, max);
+            }
+        };
+    }
+
+    private enum Kind {
+        INTEGER,
+        DECIMAL,
+        DATE
+    }
+
+    private static class Count extends Accumulator {
+        private final ColumnReader reader;
+        private long count;
+
+        /**
+         * @param reader The column whose values are counted, {@code null} to count rows
+         */
+        Count(ColumnReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        void add(int row) {
+            if (reader == null || !reader.isNull(row)) count++;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            count += ((Count) other).count;
+        }
+
+        @Override
+        Object result() {
+            return count;
+        }
+    }
+
+    private static class Sum extends Accumulator {
+        private final ColumnReader reader;
+        private final Kind kind;
+        private final boolean average;
+        private long integerSum;
+        private double decimalSum;
+        private long count;
+
+        Sum(ColumnReader reader, Kind kind, boolean average) {
+            this.reader = reader;
+            this.kind = kind;
+            this.average = average;
+        }
+
+        @Override
+        void add(int row) {
+            if (reader.isNull(row)) return;
+            double value = reader.getDouble(row);
+            if (kind == Kind.INTEGER) integerSum += (long) value;
+            else decimalSum += value;
+            count++;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            Sum sum = (Sum) other;
+            integerSum += sum.integerSum;
+            decimalSum += sum.decimalSum;
+            count += sum.count;
+        }
+
+        @Override
+        Object result() {
+            if (count == 0) return null;
+            double total = kind == Kind.INTEGER ? integerSum : decimalSum;
+            if (average) return total / count;
+            return kind == Kind.INTEGER ? (Object) integerSum : (Object) decimalSum;
+        }
+    }
+
+    private static class NumericExtreme extends Accumulator {
+        private final ColumnReader reader;
+        private final Kind kind;
+        private final boolean max;
+        private double best;
+        private boolean found;
+
+        NumericExtreme(ColumnReader reader, Kind kind, boolean max) {
+            this.reader = reader;
+            this.kind = kind;
+            this.max = max;
+        }
+
+        @Override
+        void add(int row) {
+            if (!reader.isNull(row)) offer(reader.getDouble(row));
+        }
+
+        private void offer(double value) {
+            if (!found || (max ? value > best : value < best)) best = value;
+            found = true;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            NumericExtreme extreme = (NumericExtreme) other;
+            if (extreme.found) offer(extreme.best);
+        }
+
+        @Override
+        Object result() {
+            if (!found) return null;
+            return switch (kind) {
+                case INTEGER -> (int) best;
+                case DECIMAL -> best;
+                case DATE -> new JsonDate(new Date((long) best));
+            };
+        }
+    }
+
+    /**
+     * Minimum or maximum of other column types, ordered by {@link Values#compare(Object, Object)}.
+     */
+    private static class Extreme extends Accumulator {
+        private final ColumnReader reader;
+        private final boolean max;
+        private Object best;
+
+        Extreme(ColumnReader reader, boolean max) {
+            this.reader = reader;
+            this.max = max;
+        }
+
+        @Override
+        void add(int row) {
+            offer(reader.get(row));
+        }
+
+        private void offer(Object value) {
+            if (value == null) return;
+            if (best == null || (max ? Values.compare(value, best) > 0 : Values.compare(value, best) < 0)) best = value;
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            offer(((Extreme) other).best);
+        }
+
+        @Override
+        Object result() {
+            return best;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package de.lunx.querying.aggregate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One aggregate computed by an {@link Aggregation}, e.g. {@code {"function": "SUM", "column": "price", "as": "total"}}.
+ * @param column The aggregated column, {@code null} to count rows
+ * @param name The name of the aggregate in the result rows
+ */
+public record Aggregate(AggregateFunction function, @Nullable String column, String name) {
+
+    public Aggregate(AggregateFunction function, @Nullable String column) {
+        this(function, column, function.name().toLowerCase() + (column == null ? "" : "_" + column));
+    }
+
+    @Override
+    public String toString() {
+        return function + "(" + (column == null ? "*" : column) + ")";
+    }
+}
@@ -0,0 +1,12 @@
+package de.lunx.querying.aggregate;
+
+public enum AggregateFunction {
+    /**
+     * Counts the rows, or the values of a column if one is given
+     */
+    COUNT,
+    SUM,
+    AVG,
+    MIN,
+    MAX
+}
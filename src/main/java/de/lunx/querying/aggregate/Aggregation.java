@@ -0,0 +1,121 @@
+package de.lunx.querying.aggregate;
+
+import de.lunx.data.index.TableIndex;
+import de.lunx.data.obj.TTable;
+import de.lunx.data.obj.Values;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Groups rows by the values of some columns and computes aggregates per group.
+ *
+ * <p>Groups are kept in a hash map keyed by the values of their columns, compared like
+ * {@link Values#equal(Object, Object)}. Large inputs are grouped in chunks on the scan pool
+ * and the groups of the chunks are merged, keeping the order in which groups first appear.</p>
+ */
+@Getter
+public class Aggregation {
+    private final List<String> groupBy;
+    private final List<Aggregate> aggregates;
+
+    public Aggregation(List<String> groupBy, List<Aggregate> aggregates) {
+        this.groupBy = groupBy;
+        this.aggregates = aggregates;
+    }
+
+    /**
+     * Aggregates rows of a table. Must be called while holding the table's lock.
+     * @param rows The positions of the rows to aggregate
+     * @return One row per group holding the group's values and its aggregates. Without group columns there is always exactly one row.
+     * @throws IllegalArgumentException If a column does not exist or does not support its aggregate
+     */
+    public List<Map<String, Object>> run(TTable table, int[] rows) throws IllegalArgumentException {
+        int[] groupColumns = new int[groupBy.size()];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupColumns[i] = table.indexOf(groupBy.get(i));
+            if (groupColumns[i] < 0) throw new IllegalArgumentException("\"" + groupBy.get(i) + "\" is not present in target table " + table.getName());
+        }
+        List<Supplier<Accumulator>> factories = new ArrayList<>();
+        for (Aggregate aggregate : aggregates) factories.add(Accumulator.factory(aggregate, table));
+
+        Map<Object, Group> groups = table.scanChunks(rows.length, (from, to) -> {
+            Map<Object, Group> chunk = new LinkedHashMap<>();
+            for (int i = from; i < to; i++) {
+                int row = rows[i];
+                Object key = key(table, row, groupColumns);
+                Group group = chunk.get(key);
+                if (group == null) {
+                    group = new Group(table.getValues(row, groupColumns), factories);
+                    chunk.put(key, group);
+                }
+                for (Accumulator accumulator : group.accumulators) accumulator.add(row);
+            }
+            return chunk;
+        }, Aggregation::merge);
+        if (groups.isEmpty() && groupColumns.length == 0) groups.put(List.of(), new Group(new Object[0], factories));
+
+        List<Map<String, Object>> result = new ArrayList<>(groups.size());
+        for (Group group : groups.values()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < groupColumns.length; i++) row.put(groupBy.get(i), group.values[i]);
+            for (int a = 0; a < aggregates.size(); a++) row.put(aggregates.get(a).name(), group.accumulators[a].result());
+            result.add(row);
+        }
+        return result;
+    }
+
+    /**
+     * @param rows The estimated number of aggregated rows
+     * @return The estimated number of groups, from the distinct values of the indexes of the group columns
+     */
+    public long estimateGroups(TTable table, long rows) {
+        if (groupBy.isEmpty()) return 1;
+        long groups = 1;
+        for (String column : groupBy) {
+            int ordinal = table.indexOf(column);
+            TableIndex index = ordinal < 0 ? null : table.getIndex(ordinal);
+            if (index == null) return rows;
+            groups = Math.min(rows, groups * Math.max(1, index.distinctValues()));
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Aggregate aggregate : aggregates) joiner.add(aggregate.toString());
+        return joiner + (groupBy.isEmpty() ? "" : " group by " + String.join(", ", groupBy));
+    }
+
+    private static Object key(TTable table, int row, int[] columns) {
+        if (columns.length == 1) return Values.key(table.getValue(row, columns[0]));
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) key[i] = Values.key(table.getValue(row, columns[i]));
+        return Arrays.asList(key);
+    }
+
+    private static Map<Object, Group> merge(Map<Object, Group> first, Map<Object, Group> second) {
+        for (Map.Entry<Object, Group> entry : second.entrySet()) {
+            Group group = first.get(entry.getKey());
+            if (group == null) {
+                first.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            for (int a = 0; a < group.accumulators.length; a++) group.accumulators[a].merge(entry.getValue().accumulators[a]);
+        }
+        return first;
+    }
+
+    private static class Group {
+        private final Object[] values;
+        private final Accumulator[] accumulators;
+
+        Group(Object[] values, List<Supplier<Accumulator>> factories) {
+            this.values = values;
+            this.accumulators = new Accumulator[factories.size()];
+            for (int a = 0; a < accumulators.length; a++) accumulators[a] = factories.get(a).get();
+        }
+    }
+}
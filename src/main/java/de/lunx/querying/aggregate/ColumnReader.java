@@ -0,0 +1,41 @@
+package de.lunx.querying.aggregate;
+
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.TTable;
+import de.lunx.data.storage.ColumnVector;
+import de.lunx.data.storage.ColumnarRowList;
+
+/**
+ * Reads the values of one column. Numeric and date values of columnar storage are read from the vector without boxing.
+ */
+final class ColumnReader {
+    private final TTable table;
+    private final int column;
+    private final ColumnVector vector;
+
+    ColumnReader(TTable table, int column) {
+        this.table = table;
+        this.column = column;
+        this.vector = table.getData() instanceof ColumnarRowList columnar && columnar.getColumn(column).isNumeric()
+                ? columnar.getColumn(column) : null;
+    }
+
+    boolean isNull(int row) {
+        return vector != null ? vector.isNull(row) : table.getValue(row, column) == null;
+    }
+
+    /**
+     * @return The value as number, dates as milliseconds since the epoch. Must only be called for rows that are not {@link #isNull(int) null}.
+     */
+    double getDouble(int row) {
+        if (vector != null) return vector.getDouble(row);
+        Object value = table.getValue(row, column);
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof JsonDate d && d.getDate() != null) return d.getDate().getTime();
+        throw new IllegalArgumentException("Value of column " + table.getColumns().get(column).getName() + " is not numeric");
+    }
+
+    Object get(int row) {
+        return table.getValue(row, column);
+    }
+}
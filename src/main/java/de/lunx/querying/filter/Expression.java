@@ -0,0 +1,197 @@
+package de.lunx.querying.filter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.UnaryOperator;
+
+/**
+ * Filter of a query, e.g. the {@code where} of a {@code GET_DATA} query. In JSON an expression is either
+ * a condition like {@code {"column": "age", "operator": "GREATER", "value": 18}} or combines other
+ * expressions as {@code {"and": [...]}}, {@code {"or": [...]}} or {@code {"not": {...}}}.
+ *
+ * <p>An expression is parsed once and {@link #compile(TTable) compiled} for the table it is run on.</p>
+ */
+public abstract class Expression {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Binds the expression to the columns and storage of a table. Condition values are converted to the
+     * column types. Must be called while holding the table's lock, the predicate is only valid until it is released.
+     */
+    public abstract RowPredicate compile(TTable table);
+
+    /**
+     * Copies the expression, replacing every condition, e.g. to bind the parameters of a prepared query.
+     */
+    public abstract Expression map(UnaryOperator<QueryCondition> mapper);
+
+    public static Expression parse(JsonElement element) throws IllegalArgumentException {
+        if (!element.isJsonObject()) throw new IllegalArgumentException("Filter expressions must be objects");
+        JsonObject o = element.getAsJsonObject();
+        if (o.has("and")) return new And(parseAll(o.get("and")));
+        if (o.has("or")) return new Or(parseAll(o.get("or")));
+        if (o.has("not")) return new Not(parse(o.get("not")));
+        if (!o.has("column")) throw new IllegalArgumentException("Filter condition without column: " + o);
+        return new Condition(GSON.fromJson(o, QueryCondition.class));
+    }
+
+    /**
+     * @return An expression matching rows that match any of the conditions, like the {@code conditions} of a query
+     */
+    public static Expression anyOf(List<QueryCondition> conditions) {
+        List<Expression> operands = new ArrayList<>();
+        for (QueryCondition c : conditions) operands.add(new Condition(c));
+        return operands.size() == 1 ? operands.get(0) : new Or(operands);
+    }
+
+    private static List<Expression> parseAll(JsonElement element) {
+        if (!element.isJsonArray()) throw new IllegalArgumentException("Expected an array of filter expressions");
+        List<Expression> operands = new ArrayList<>();
+        for (JsonElement e : element.getAsJsonArray()) operands.add(parse(e));
+        return operands;
+    }
+
+    private static RowPredicate[] compileAll(List<Expression> operands, TTable table) {
+        RowPredicate[] predicates = new RowPredicate[operands.size()];
+        for (int i = 0; i < predicates.length; i++) predicates[i] = operands.get(i).compile(table);
+        return predicates;
+    }
+
+    private static List<Expression> mapAll(List<Expression> operands, UnaryOperator<QueryCondition> mapper) {
+        List<Expression> mapped = new ArrayList<>(operands.size());
+        for (Expression e : operands) mapped.add(e.map(mapper));
+        return mapped;
+    }
+
+    private static String join(List<Expression> operands, String operator) {
+        StringJoiner joiner = new StringJoiner(" " + operator + " ", "(", ")");
+        for (Expression e : operands) joiner.add(e.toString());
+        return joiner.toString();
+    }
+
+    @Getter
+    public static class And extends Expression {
+        private final List<Expression> operands;
+
+        public And(List<Expression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public RowPredicate compile(TTable table) {
+            RowPredicate[] p = compileAll(operands, table);
+            return switch (p.length) {
+                case 0 -> RowPredicate.ALL;
+                case 1 -> p[0];
+                case 2 -> row -> p[0].test(row) && p[1].test(row);
+                default -> row -> {
+                    for (RowPredicate predicate : p) if (!predicate.test(row)) return false;
+                    return true;
+                };
+            };
+        }
+
+        @Override
+        public Expression map(UnaryOperator<QueryCondition> mapper) {
+            return new And(mapAll(operands, mapper));
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, "AND");
+        }
+    }
+
+    @Getter
+    public static class Or extends Expression {
+        private final List<Expression> operands;
+
+        public Or(List<Expression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public RowPredicate compile(TTable table) {
+            RowPredicate[] p = compileAll(operands, table);
+            return switch (p.length) {
+                case 0 -> row -> false;
+                case 1 -> p[0];
+                case 2 -> row -> p[0].test(row) || p[1].test(row);
+                default -> row -> {
+                    for (RowPredicate predicate : p) if (predicate.test(row)) return true;
+                    return false;
+                };
+            };
+        }
+
+        @Override
+        public Expression map(UnaryOperator<QueryCondition> mapper) {
+            return new Or(mapAll(operands, mapper));
+        }
+
+        @Override
+        public String toString() {
+            return join(operands, "OR");
+        }
+    }
+
+    /**
+     * Matches the rows its operand does not match, including rows without a value in the operand's column.
+     */
+    @Getter
+    public static class Not extends Expression {
+        private final Expression operand;
+
+        public Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public RowPredicate compile(TTable table) {
+            RowPredicate p = operand.compile(table);
+            return row -> !p.test(row);
+        }
+
+        @Override
+        public Expression map(UnaryOperator<QueryCondition> mapper) {
+            return new Not(operand.map(mapper));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    @Getter
+    public static class Condition extends Expression {
+        private final QueryCondition condition;
+
+        public Condition(QueryCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public RowPredicate compile(TTable table) {
+            return PredicateCompiler.compile(table, condition);
+        }
+
+        @Override
+        public Expression map(UnaryOperator<QueryCondition> mapper) {
+            return new Condition(mapper.apply(condition));
+        }
+
+        @Override
+        public String toString() {
+            return condition.toString();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.lunx.querying.filter;
+
+import de.lunx.data.JsonDate;
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+import de.lunx.data.storage.ColumnVector;
+import de.lunx.data.storage.ColumnarRowList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoublePredicate;
+
+/**
+ * Compiles single conditions into predicates specialized for the column type and the storage of the table.
+ * Numeric and date conditions are compared as primitive doubles, on columnar storage straight from the
+ * column vectors. Everything else falls back to {@link QueryCondition#matches(Object)} on the stored value.
+ */
+final class PredicateCompiler {
+    private PredicateCompiler() {
+    }
+
+    static RowPredicate compile(TTable table, QueryCondition query) {
+        int column = table.indexOf(query.getColumn());
+        if (column < 0) {
+            boolean matches = query.matches(null);
+            return row -> matches;
+        }
+        TColumnType type = table.getColumns().get(column).getType();
+        QueryCondition condition = query.convertValues(type);
+        ColumnVector vector = table.getData() instanceof ColumnarRowList columnar ? columnar.getColumn(column) : null;
+
+        QueryCondition.Operator operator = condition.getOperator();
+        if (operator == QueryCondition.Operator.IS_NULL || operator == QueryCondition.Operator.IS_NOT_NULL) {
+            boolean expectNull = operator == QueryCondition.Operator.IS_NULL;
+            if (vector != null) return row -> vector.isNull(row) == expectNull;
+            return row -> (table.getValue(row, column) == null) == expectNull;
+        }
+
+        boolean dates = type == TColumnType.DATE || type == TColumnType.TIME || type == TColumnType.DATETIME;
+        DoublePredicate numeric = numeric(condition, dates);
+        if (numeric != null && vector != null && vector.isNumeric()) {
+            return row -> !vector.isNull(row) && numeric.test(vector.getDouble(row));
+        }
+        if (numeric != null && vector == null) {
+            return row -> {
+                Object value = table.getValue(row, column);
+                if (!dates && value instanceof Number n) return numeric.test(n.doubleValue());
+                if (dates && value instanceof JsonDate d && d.getDate() != null) return numeric.test(d.getDate().getTime());
+                return condition.matches(value);
+            };
+        }
+        if (vector != null && operator == QueryCondition.Operator.EQUALS) {
+            Object value = condition.getValue();
+            return row -> vector.valueEquals(row, value);
+        }
+        return row -> condition.matches(table.getValue(row, column));
+    }
+
+    /**
+     * @param dates Whether the condition is on a date column, whose values are compared as epoch milliseconds
+     * @return A test of the numeric column value, or {@code null} if the condition is not numeric
+     */
+    @Nullable
+    private static DoublePredicate numeric(QueryCondition condition, boolean dates) {
+        if (condition.getOperator() == QueryCondition.Operator.IN) {
+            List<Object> values = condition.getValues();
+            if (values == null) return null;
+            double[] sorted = new double[values.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                Double d = number(values.get(i), dates);
+                if (d == null) return null;
+                sorted[i] = d;
+            }
+            Arrays.sort(sorted);
+            return d -> Arrays.binarySearch(sorted, d) >= 0;
+        }
+        Double boxed = number(condition.getValue(), dates);
+        if (boxed == null) return null;
+        double value = boxed;
+        return switch (condition.getOperator()) {
+            case EQUALS -> d -> Double.compare(d, value) == 0;
+            case NOT_EQUALS -> d -> Double.compare(d, value) != 0;
+            case LESS -> d -> Double.compare(d, value) < 0;
+            case LESS_OR_EQUAL -> d -> Double.compare(d, value) <= 0;
+            case GREATER -> d -> Double.compare(d, value) > 0;
+            case GREATER_OR_EQUAL -> d -> Double.compare(d, value) >= 0;
+            case BETWEEN -> {
+                Double to = number(condition.getTo(), dates);
+                if (to == null) yield null;
+                double upper = to;
+                yield d -> Double.compare(d, value) >= 0 && Double.compare(d, upper) <= 0;
+            }
+            default -> null;
+        };
+    }
+
+    @Nullable
+    private static Double number(Object value, boolean dates) {
+        if (dates) return value instanceof JsonDate d && d.getDate() != null ? (double) d.getDate().getTime() : null;
+        return value instanceof Number n ? n.doubleValue() : null;
+    }
+}
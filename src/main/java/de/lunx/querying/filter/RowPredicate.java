@@ -0,0 +1,20 @@
+package de.lunx.querying.filter;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Filter compiled for one table, see {@link Expression#compile(de.lunx.data.obj.TTable)}.
+ * Testing a row reads the stored values by column ordinal and does not allocate.
+ * Predicates do not keep state, so a table may be scanned with one predicate on several threads.
+ */
+@FunctionalInterface
+public interface RowPredicate extends IntPredicate {
+    RowPredicate ALL = row -> true;
+
+    /**
+     * Must be called while holding the lock of the table the predicate was compiled for.
+     * @param row The position of the row
+     */
+    @Override
+    boolean test(int row);
+}
@@ -0,0 +1,66 @@
+package de.lunx.querying.plan;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.lunx.data.JsonDate;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Continuation point of a paged query, handed to clients as an opaque string. The next page starts after
+ * the row with the cursor's sort value and position, so rows added between two pages neither shift the
+ * pages nor show up twice. Cursors stay valid as long as no rows are removed from the table.
+ * @param orderBy The sort column of the query, {@code null} if the rows are in storage order
+ * @param value The sort value of the last row of the page
+ * @param position The position of the last row of the page
+ */
+public record Cursor(@Nullable String orderBy, boolean descending, @Nullable Object value, int position) {
+
+    /**
+     * @return Whether this cursor was created for a query with the same order
+     */
+    public boolean continues(@Nullable String orderBy, boolean descending) {
+        return Objects.equals(this.orderBy, orderBy) && (orderBy == null || this.descending == descending);
+    }
+
+    public String encode() {
+        JsonObject o = new JsonObject();
+        if (orderBy != null) {
+            o.addProperty("o", orderBy);
+            o.addProperty("d", descending);
+            if (value instanceof JsonDate date && date.getDate() != null) o.addProperty("t", date.getDate().getTime());
+            else if (value instanceof Number n) o.addProperty("n", n.doubleValue());
+            else if (value instanceof Boolean b) o.addProperty("b", b);
+            else if (value instanceof Character c) o.addProperty("c", c.toString());
+            else if (value != null) o.addProperty("s", value.toString());
+        }
+        o.addProperty("p", position);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(o.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException If the string is not a cursor
+     */
+    public static Cursor decode(String cursor) throws IllegalArgumentException {
+        try {
+            JsonObject o = JsonParser.parseString(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8))
+                    .getAsJsonObject();
+            String orderBy = o.has("o") ? o.get("o").getAsString() : null;
+            Object value = null;
+            if (o.has("t")) value = new JsonDate(new Date(o.get("t").getAsLong()));
+            else if (o.has("n")) value = o.get("n").getAsDouble();
+            else if (o.has("b")) value = o.get("b").getAsBoolean();
+            else if (o.has("c")) value = o.get("c").getAsString().charAt(0);
+            else if (o.has("s")) value = o.get("s").getAsString();
+            JsonElement descending = o.get("d");
+            return new Cursor(orderBy, descending != null && descending.getAsBoolean(), value, o.get("p").getAsInt());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import de.lunx.querying.filter.Expression;
+import de.lunx.querying.filter.RowPredicate;
+
+import java.util.stream.IntStream;
+
+/**
+ * Passes on the rows matching a filter expression. The expression is compiled for the table on every execution.
+ * Large inputs are filtered in parallel unless only some rows are needed, see {@link TTable#scanChunks(int, de.lunx.data.storage.ScanPool.ChunkScan, java.util.function.BinaryOperator)}.
+ */
+public class Filter extends PlanNode {
+    private final PlanNode input;
+    private final Expression filter;
+
+    public Filter(PlanNode input, Expression filter, long estimatedRows) {
+        super("Filter", filter.toString(), estimatedRows, input);
+        this.input = input;
+        this.filter = filter;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        RowPredicate predicate = filter.compile(table);
+        // Only some rows are needed, so the input is filtered lazily until enough rows matched
+        if (needed != Long.MAX_VALUE) return input.execute(table).filter(predicate).limit(needed);
+        if (input instanceof FullScan scan) return IntStream.of(table.scan(scan.getFrom(), predicate));
+        return IntStream.of(table.filter(input.execute(table).toArray(), predicate));
+    }
+}
@@ -0,0 +1,27 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+
+import java.util.stream.IntStream;
+
+/**
+ * Passes on the rows of the table in storage order.
+ */
+public class FullScan extends PlanNode {
+    /**
+     * The position of the first row to pass on
+     */
+    @Getter
+    private final int from;
+
+    public FullScan(TTable table, int from) {
+        super("FullScan", table.getName() + (from > 0 ? " from row " + from : ""), Math.max(0, table.getRowCount() - from));
+        this.from = from;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        return IntStream.range(Math.min(from, table.getRowCount()), table.getRowCount());
+    }
+}
@@ -0,0 +1,38 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.index.TableIndex;
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TTable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the rows matching any of the conditions through the indexes of their columns.
+ */
+public class IndexLookup extends PlanNode {
+    private final List<QueryCondition> conditions;
+    private final List<TableIndex> indexes;
+
+    public IndexLookup(List<QueryCondition> conditions, List<TableIndex> indexes, long estimatedRows) {
+        super("IndexLookup", describe(conditions, indexes), estimatedRows);
+        this.conditions = conditions;
+        this.indexes = indexes;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        if (conditions.size() == 1) return IntStream.of(indexes.get(0).lookup(conditions.get(0)));
+        int[][] matches = new int[conditions.size()][];
+        for (int c = 0; c < matches.length; c++) matches[c] = indexes.get(c).lookup(conditions.get(c));
+        return Arrays.stream(matches).flatMapToInt(Arrays::stream).sorted().distinct();
+    }
+
+    private static String describe(List<QueryCondition> conditions, List<TableIndex> indexes) {
+        StringJoiner joiner = new StringJoiner(" OR ");
+        for (int c = 0; c < conditions.size(); c++) joiner.add(conditions.get(c) + " using " + indexes.get(c).getType());
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.index.OrderedIndex;
+import de.lunx.data.obj.TTable;
+
+import java.util.stream.IntStream;
+
+/**
+ * Passes on every row of the table in the order of an ordered index, which makes a sort unnecessary.
+ * The rows are streamed from the index, so only as many rows as needed are visited.
+ */
+public class IndexOrderScan extends PlanNode {
+    private final OrderedIndex index;
+    private final boolean descending;
+
+    public IndexOrderScan(OrderedIndex index, String column, boolean descending, long estimatedRows) {
+        super("IndexOrderScan", column + (descending ? " DESC" : " ASC"), estimatedRows);
+        this.index = index;
+        this.descending = descending;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        return index.ordered(descending, null).limit(needed);
+    }
+
+    /**
+     * Passes on the rows starting with the first one holding {@code value}, without visiting the rows before it.
+     */
+    public IntStream execute(Object value, long needed) {
+        return index.ordered(descending, value).limit(needed);
+    }
+}
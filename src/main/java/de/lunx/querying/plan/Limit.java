@@ -0,0 +1,29 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+
+import java.util.stream.IntStream;
+
+/**
+ * Skips the first rows and passes on at most a given number of the following ones.
+ */
+public class Limit extends PlanNode {
+    private final PlanNode input;
+    private final long offset;
+    private final long limit;
+
+    public Limit(PlanNode input, long offset, long limit) {
+        super("Limit", (limit == Long.MAX_VALUE ? "all" : String.valueOf(limit)) + (offset > 0 ? " offset " + offset : ""),
+                Math.max(0, Math.min(input.getEstimatedRows() - offset, limit)), input);
+        this.input = input;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        long rows = Math.min(limit, needed);
+        long through = offset + rows < 0 ? Long.MAX_VALUE : offset + rows;
+        return input.execute(table, through).skip(offset).limit(rows);
+    }
+}
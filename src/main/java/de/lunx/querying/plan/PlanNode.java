@@ -0,0 +1,39 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Step of a {@link QueryPlan}. Every step produces the positions of the rows it passes on.
+ */
+@Getter
+public abstract class PlanNode {
+    private final String name;
+    private final String detail;
+    private final long estimatedRows;
+    private final List<PlanNode> children;
+
+    protected PlanNode(String name, String detail, long estimatedRows, PlanNode... children) {
+        this.name = name;
+        this.detail = detail;
+        this.estimatedRows = estimatedRows;
+        this.children = List.of(children);
+    }
+
+    /**
+     * Produces the row positions of this step. Must be called while holding the table's lock.
+     */
+    public IntStream execute(TTable table) {
+        return execute(table, Long.MAX_VALUE);
+    }
+
+    /**
+     * Produces the row positions of this step, of which the following steps use at most the given number.
+     * Steps may stop early once they produced them, e.g. a filtered scan below a limit.
+     * @param needed The number of rows needed, {@link Long#MAX_VALUE} for all of them
+     */
+    public abstract IntStream execute(TTable table, long needed);
+}
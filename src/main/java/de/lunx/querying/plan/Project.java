@@ -0,0 +1,31 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Restricts the returned rows to some of the table's columns. The rows are passed on unchanged,
+ * only the picked columns are read when the result is {@link QueryPlan#fetch(TTable, int[], int, int, List) fetched}.
+ */
+public class Project extends PlanNode {
+    private final PlanNode input;
+    @Getter
+    private final List<String> names;
+    @Getter
+    private final int[] columns;
+
+    public Project(PlanNode input, List<String> names, int[] columns) {
+        super("Project", String.join(", ", names), input.getEstimatedRows(), input);
+        this.input = input;
+        this.names = names;
+        this.columns = columns;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        return input.execute(table, needed);
+    }
+}
@@ -0,0 +1,116 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TTable;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Steps chosen by the {@link QueryPlanner} to find the rows of a query. A plan is bound to the table
+ * it was created for and has to be executed while holding the same lock it was planned under.
+ */
+@Getter
+public class QueryPlan {
+    private final PlanNode root;
+    private final List<QueryCondition> conditions;
+    /**
+     * The ordinal of every condition's column, {@code -1} for columns the table does not have
+     */
+    private final int[] conditionColumns;
+    /**
+     * The sort column, {@code null} if the rows are returned in storage order
+     */
+    @Nullable
+    private final String orderBy;
+    private final int orderColumn;
+    private final boolean descending;
+    private final long limit;
+
+    QueryPlan(PlanNode root, List<QueryCondition> conditions, int[] conditionColumns,
+              @Nullable String orderBy, int orderColumn, boolean descending, long limit) {
+        this.root = root;
+        this.conditions = conditions;
+        this.conditionColumns = conditionColumns;
+        this.orderBy = orderBy;
+        this.orderColumn = orderColumn;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * @return The positions of the rows matching the query, in result order
+     */
+    public int[] execute(TTable table) {
+        return root.execute(table).toArray();
+    }
+
+    /**
+     * Reads some of the matching rows, restricted to the projected columns if the plan has a projection.
+     * Must be called while holding the table's lock, the read rows are copies that may be used after releasing it.
+     * @param rows The rows returned by {@link #execute(TTable)}
+     * @param from The first of the rows to read
+     * @param to The position after the last of the rows to read
+     * @param out The list the rows are added to
+     */
+    public void fetch(TTable table, int[] rows, int from, int to, List<Map<String, Object>> out) {
+        Project project = root instanceof Project p ? p : null;
+        for (int i = from; i < to; i++) out.add(row(table, rows[i], project));
+    }
+
+    private static Map<String, Object> row(TTable table, int row, @Nullable Project project) {
+        if (project == null) return table.getRow(row);
+        Object[] values = table.getValues(row, project.getColumns());
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] != null) projected.put(project.getNames().get(c), values[c]);
+        }
+        return projected;
+    }
+
+    /**
+     * @param rows The rows returned by {@link #execute(TTable)}
+     * @return The cursor continuing after these rows, or {@code null} if there are no further rows
+     */
+    @Nullable
+    public Cursor nextCursor(TTable table, int[] rows) {
+        if (limit == Long.MAX_VALUE || rows.length == 0 || rows.length < limit) return null;
+        int last = rows[rows.length - 1];
+        return new Cursor(orderBy, descending, table.getValue(last, orderColumn), last);
+    }
+
+    /**
+     * Describes the steps of this plan, one row per step starting with the last one.
+     * Every row holds the depth of the step, its name, details and the estimated number of rows it passes on.
+     */
+    public List<Map<String, Object>> explain() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        describe(root, 0, rows);
+        return rows;
+    }
+
+    /**
+     * Describes the steps of this plan below a step processing its rows outside of the plan, e.g. an aggregation.
+     */
+    public List<Map<String, Object>> explain(String step, String detail, long estimatedRows) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        rows.add(step(0, step, detail, estimatedRows));
+        describe(root, 1, rows);
+        return rows;
+    }
+
+    private static void describe(PlanNode node, int depth, List<Map<String, Object>> rows) {
+        rows.add(step(depth, node.getName(), node.getDetail(), node.getEstimatedRows()));
+        for (PlanNode child : node.getChildren()) describe(child, depth + 1, rows);
+    }
+
+    private static Map<String, Object> step(int depth, String step, String detail, long estimatedRows) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("depth", depth);
+        row.put("step", step);
+        row.put("detail", detail);
+        row.put("estimatedRows", estimatedRows);
+        return row;
+    }
+}
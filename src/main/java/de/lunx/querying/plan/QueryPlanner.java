@@ -0,0 +1,272 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.index.OrderedIndex;
+import de.lunx.data.index.TableIndex;
+import de.lunx.data.obj.QueryCondition;
+import de.lunx.data.obj.TTable;
+import de.lunx.querying.filter.Expression;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the {@link QueryPlan} of a query on one table.
+ *
+ * <p>Access paths are picked from the indexes of the table and its statistics: the number of rows
+ * and the number of distinct values in each index. Conditions on columns without an index are
+ * estimated with fixed selectivities. Planning must happen while holding the table's lock.</p>
+ */
+public class QueryPlanner {
+    private static final double EQUALS_SELECTIVITY = 0.1;
+    private static final double RANGE_SELECTIVITY = 1 / 3.0;
+    private static final double BETWEEN_SELECTIVITY = 0.25;
+    private static final double PREFIX_SELECTIVITY = 0.1;
+    private static final double NULL_SELECTIVITY = 0.1;
+    /**
+     * Index lookups are only used while they are expected to match at most this share of the table,
+     * above it a sequential scan touches the rows more cheaply than the scattered lookups
+     */
+    private static final double INDEX_SHARE = 0.3;
+
+    private final TTable table;
+    private List<QueryCondition> conditions = List.of();
+    @Nullable
+    private Expression filter;
+    @Nullable
+    private String orderBy;
+    private boolean descending;
+    @Nullable
+    private List<String> columns;
+    private long offset;
+    private long limit = Long.MAX_VALUE;
+    @Nullable
+    private Cursor cursor;
+
+    public QueryPlanner(TTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Copies the settings of another planner, e.g. the order and limit of a prepared query.
+     */
+    public QueryPlanner(QueryPlanner other) {
+        this.table = other.table;
+        this.conditions = other.conditions;
+        this.filter = other.filter;
+        this.orderBy = other.orderBy;
+        this.descending = other.descending;
+        this.columns = other.columns;
+        this.offset = other.offset;
+        this.limit = other.limit;
+        this.cursor = other.cursor;
+    }
+
+    /**
+     * @param filter The filter expression of the query, {@code null} if it has none
+     * @param conditions Conditions of which a row has to match any, in addition to the filter.
+     *                   The plan uses copies of them with values converted to the types of their columns.
+     */
+    public QueryPlanner where(@Nullable Expression filter, List<QueryCondition> conditions) {
+        this.conditions = conditions;
+        if (conditions.isEmpty()) this.filter = filter;
+        else if (filter == null) this.filter = Expression.anyOf(conditions);
+        else this.filter = new Expression.And(List.of(filter, Expression.anyOf(conditions)));
+        return this;
+    }
+
+    public QueryPlanner orderBy(@Nullable String column, boolean descending) {
+        this.orderBy = column;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * @param columns The columns to return, {@code null} for all of them
+     */
+    public QueryPlanner select(@Nullable List<String> columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    public QueryPlanner limit(long offset, long limit) {
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @param cursor The cursor returned with the previous page, {@code null} for the first page.
+     *               It has to {@link Cursor#continues(String, boolean) continue} the order of the query.
+     */
+    public QueryPlanner after(@Nullable Cursor cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * @return Whether the cursor was created for a query with the same order as this one
+     */
+    public boolean continues(Cursor cursor) {
+        boolean ordered = orderBy != null && table.indexOf(orderBy) >= 0;
+        return cursor.continues(ordered ? orderBy : null, descending);
+    }
+
+    public QueryPlan plan() {
+        int[] conditionColumns = bindConditions();
+        // Planning works on converted copies, so the conditions of the query stay untouched
+        List<QueryCondition> conditions = this.conditions.stream().map(this::convert).toList();
+        Expression filter = this.filter == null ? null : this.filter.map(this::convert);
+        long rows = table.getRowCount();
+        long matching = filter == null ? rows : Math.round(selectivity(filter) * rows);
+        int orderColumn = orderBy == null ? -1 : table.indexOf(orderBy);
+        // Without a sort column a cursor is a row position, so scans start right after it
+        int start = cursor != null && orderColumn < 0 ? cursor.position() + 1 : 0;
+        PlanNode node = access(filter, rows, matching, start);
+        if (cursor != null && orderColumn < 0 && !scans(node)) node = new Seek(node, cursor, -1);
+
+        if (orderColumn >= 0) {
+            // An ordered index lists all rows in order, which beats sorting unless few rows match
+            if (table.getIndex(orderColumn) instanceof OrderedIndex ordered && rows <= sortCost(node, rows)) {
+                PlanNode scan = new IndexOrderScan(ordered, orderBy, descending, rows);
+                if (cursor != null) scan = new Seek(scan, cursor, orderColumn);
+                node = filter == null ? scan : new Filter(scan, filter, matching);
+            } else {
+                if (cursor != null) node = new Seek(node, cursor, orderColumn);
+                node = new Sort(node, orderBy, orderColumn, descending);
+            }
+        }
+        if (offset > 0 || limit != Long.MAX_VALUE) node = new Limit(node, offset, limit);
+        if (columns != null) {
+            int[] ordinals = new int[columns.size()];
+            for (int i = 0; i < ordinals.length; i++) ordinals[i] = table.indexOf(columns.get(i));
+            node = new Project(node, columns, ordinals);
+        }
+        return new QueryPlan(node, conditions, conditionColumns, orderColumn < 0 ? null : orderBy, orderColumn, descending, limit);
+    }
+
+    /**
+     * Chooses between a lookup through indexes and a filtered full scan.
+     * @param start The position the scan starts at
+     */
+    private PlanNode access(@Nullable Expression filter, long rows, long matching, int start) {
+        if (filter == null) return new FullScan(table, start);
+        Access access = lookup(filter);
+        long candidates = access == null ? rows : Math.round(access.selectivity() * rows);
+        if (access == null || candidates > rows * INDEX_SHARE) {
+            return new Filter(new FullScan(table, start), filter, matching);
+        }
+        PlanNode lookup = new IndexLookup(access.conditions(), access.indexes(), candidates);
+        return access.exact() ? lookup : new Filter(lookup, filter, matching);
+    }
+
+    /**
+     * @return Whether the access path is a (filtered) full scan
+     */
+    private static boolean scans(PlanNode node) {
+        return node instanceof FullScan || (node instanceof Filter && node.getChildren().get(0) instanceof FullScan);
+    }
+
+    /**
+     * Finds the index lookups returning the rows of an expression. Of the operands of AND only the
+     * most selective one is looked up, the others are checked by filtering the rows found.
+     * @return The lookups, or {@code null} if the rows cannot be found through indexes
+     */
+    @Nullable
+    private Access lookup(Expression expression) {
+        if (expression instanceof Expression.Condition c) {
+            QueryCondition condition = c.getCondition();
+            int column = table.indexOf(condition.getColumn());
+            TableIndex index = column < 0 ? null : table.getIndex(column);
+            if (index == null || !index.supports(condition.getOperator())) return null;
+            return new Access(List.of(condition), List.of(index), selectivity(expression), true);
+        }
+        if (expression instanceof Expression.Or or) {
+            List<QueryCondition> conditions = new ArrayList<>();
+            List<TableIndex> indexes = new ArrayList<>();
+            boolean exact = true;
+            for (Expression operand : or.getOperands()) {
+                Access access = lookup(operand);
+                if (access == null) return null;
+                conditions.addAll(access.conditions());
+                indexes.addAll(access.indexes());
+                exact &= access.exact();
+            }
+            return conditions.isEmpty() ? null : new Access(conditions, indexes, selectivity(expression), exact);
+        }
+        if (expression instanceof Expression.And and) {
+            Access best = null;
+            for (Expression operand : and.getOperands()) {
+                Access access = lookup(operand);
+                if (access != null && (best == null || access.selectivity() < best.selectivity())) best = access;
+            }
+            if (best == null || and.getOperands().size() == 1) return best;
+            return new Access(best.conditions(), best.indexes(), best.selectivity(), false);
+        }
+        return null;
+    }
+
+    /**
+     * @return The estimated share of rows matching an expression
+     */
+    private double selectivity(Expression expression) {
+        if (expression instanceof Expression.And and) {
+            double selectivity = 1;
+            for (Expression operand : and.getOperands()) selectivity *= selectivity(operand);
+            return selectivity;
+        }
+        if (expression instanceof Expression.Or or) {
+            double selectivity = 0;
+            for (Expression operand : or.getOperands()) selectivity += selectivity(operand);
+            return Math.min(1, selectivity);
+        }
+        if (expression instanceof Expression.Not not) return 1 - selectivity(not.getOperand());
+        QueryCondition condition = ((Expression.Condition) expression).getCondition();
+        int column = table.indexOf(condition.getColumn());
+        TableIndex index = column < 0 ? null : table.getIndex(column);
+        double equals = index != null && index.distinctValues() > 0 ? 1.0 / index.distinctValues() : EQUALS_SELECTIVITY;
+        return switch (condition.getOperator()) {
+            case EQUALS -> equals;
+            case NOT_EQUALS -> 1 - equals;
+            case IN -> Math.min(1, equals * (condition.getValues() == null ? 0 : condition.getValues().size()));
+            case LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL -> RANGE_SELECTIVITY;
+            case BETWEEN -> BETWEEN_SELECTIVITY;
+            case PREFIX -> PREFIX_SELECTIVITY;
+            case IS_NULL -> NULL_SELECTIVITY;
+            case IS_NOT_NULL -> 1 - NULL_SELECTIVITY;
+        };
+    }
+
+    /**
+     * @return The estimated number of rows touched to find and sort the rows of the access path
+     */
+    private static double sortCost(PlanNode access, long rows) {
+        long matching = access.getEstimatedRows();
+        double sort = matching > 1 ? matching * (Math.log(matching) / Math.log(2)) : 0;
+        return (access instanceof IndexLookup ? matching : rows) + sort;
+    }
+
+    /**
+     * @return The condition with its values converted to the type of its column
+     */
+    private QueryCondition convert(QueryCondition condition) {
+        int column = table.indexOf(condition.getColumn());
+        return column < 0 ? condition : condition.convertValues(table.getColumns().get(column).getType());
+    }
+
+    /**
+     * Resolves the columns of the conditions given as list.
+     * @return The ordinal of every condition's column, {@code -1} for columns the table does not have
+     */
+    private int[] bindConditions() {
+        int[] ordinals = new int[conditions.size()];
+        for (int c = 0; c < ordinals.length; c++) {
+            QueryCondition condition = conditions.get(c);
+            ordinals[c] = table.indexOf(condition.getColumn());
+        }
+        return ordinals;
+    }
+
+    private record Access(List<QueryCondition> conditions, List<TableIndex> indexes, double selectivity, boolean exact) {
+    }
+}
@@ -0,0 +1,12 @@
+package de.lunx.querying.plan;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives the rows of a result set one at a time, e.g. to write them straight into a response.
+ */
+@FunctionalInterface
+public interface RowConsumer {
+    void accept(Map<String, Object> row) throws IOException;
+}
@@ -0,0 +1,39 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import de.lunx.data.obj.Values;
+
+import java.util.stream.IntStream;
+
+/**
+ * Passes on the rows following a {@link Cursor} in the order of the query.
+ */
+public class Seek extends PlanNode {
+    private final PlanNode input;
+    private final Cursor cursor;
+    private final int column;
+
+    /**
+     * @param column The ordinal of the sort column, {@code -1} for rows in storage order
+     */
+    public Seek(PlanNode input, Cursor cursor, int column) {
+        super("Seek", "after " + (column < 0 ? "" : cursor.orderBy() + " = " + cursor.value() + " at ") + "row " + cursor.position(),
+                input.getEstimatedRows(), input);
+        this.input = input;
+        this.cursor = cursor;
+        this.column = column;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        // An ordered index starts at the value of the cursor, only rows sharing it are skipped here
+        IntStream rows = input instanceof IndexOrderScan scan ? scan.execute(cursor.value(), Long.MAX_VALUE) : input.execute(table);
+        return rows.filter(row -> follows(table, row)).limit(needed);
+    }
+
+    private boolean follows(TTable table, int row) {
+        int order = column < 0 ? 0 : Values.compare(table.getValue(row, column), cursor.value());
+        if (cursor.descending()) order = -order;
+        return order > 0 || (order == 0 && row > cursor.position());
+    }
+}
@@ -0,0 +1,46 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.obj.TTable;
+import de.lunx.data.obj.Values;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Orders the rows by the values of a column. Rows with equal values are ordered by their position,
+ * in both directions, like an {@link IndexOrderScan} lists them. If only the first rows are needed,
+ * only those are kept in a bounded heap instead of sorting all rows.
+ */
+public class Sort extends PlanNode {
+    private final PlanNode input;
+    private final int column;
+    private final boolean descending;
+
+    public Sort(PlanNode input, String name, int column, boolean descending) {
+        super("Sort", name + (descending ? " DESC" : " ASC"), input.getEstimatedRows(), input);
+        this.input = input;
+        this.column = column;
+        this.descending = descending;
+    }
+
+    @Override
+    public IntStream execute(TTable table, long needed) {
+        Comparator<Integer> byValue = Comparator.comparing(row -> table.getValue(row, column), Values::compare);
+        Comparator<Integer> comparator = (descending ? byValue.reversed() : byValue).thenComparingInt(Integer::intValue);
+        int[] rows = input.execute(table).toArray();
+        if (needed >= rows.length) return Arrays.stream(rows).boxed().sorted(comparator).mapToInt(Integer::intValue);
+
+        // Keeps the first rows, the heap's head is the last of them
+        int count = (int) needed;
+        PriorityQueue<Integer> first = new PriorityQueue<>(count + 1, comparator.reversed());
+        for (int row : rows) {
+            first.add(row);
+            if (first.size() > count) first.poll();
+        }
+        int[] result = new int[first.size()];
+        for (int i = result.length - 1; i >= 0; i--) result[i] = first.poll();
+        return IntStream.of(result);
+    }
+}
@@ -0,0 +1,55 @@
+package de.lunx;
+
+import de.lunx.data.DataManager;
+import de.lunx.data.obj.TColumn;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+
+import java.io.File;
+import java.lang.reflect.Field;
+
+/**
+ * Sets up the parts of a running server the data layer relies on, with the data directory in a test folder.
+ * The data secret is the same for all tests, as it is read once when the encryption is first used.
+ */
+public final class TestData {
+    public static final String DATA_SECRET = "0123456789abcdef";
+
+    private TestData() {
+    }
+
+    /**
+     * Creates a data manager for the directory, makes it the one of the server and loads the data found there.
+     * Starting another one on the same directory without shutting this one down acts like a restart after a crash.
+     */
+    public static DataManager start(File directory) {
+        try {
+            if (Main.getInstance() == null) set(null, "instance", new Main());
+            set(Main.getInstance(), "dataSecret", DATA_SECRET);
+            DataManager dataManager = DataManager.create(new File(directory, "data"));
+            set(Main.getInstance(), "dataManager", dataManager);
+            dataManager.loadData();
+            return dataManager;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates the database {@code db} with the table {@code people}, having the columns {@code id} and {@code name}.
+     */
+    public static TTable createPeople(DataManager dataManager) {
+        dataManager.createDatabase("db");
+        TTable table = new TTable("people", "db");
+        table.addColumn(new TColumn(table, "id", TColumnType.INTEGER));
+        table.addColumn(new TColumn(table, "name", TColumnType.TEXT));
+        table.build();
+        return table;
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = Main.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
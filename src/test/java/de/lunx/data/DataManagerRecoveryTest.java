@@ -0,0 +1,83 @@
+package de.lunx.data;
+
+import de.lunx.TestData;
+import de.lunx.data.obj.TTable;
+import de.lunx.data.storage.WalRecord;
+import de.lunx.querying.QueryParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Restarts the data manager without saving the tables, as after a crash, so logged changes have to be replayed.
+ */
+class DataManagerRecoveryTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void replaysLoggedChanges() {
+        TestData.createPeople(TestData.start(directory));
+        query("{type:'CREATE_INDEX',database:'db',table:'people',column:'id',index:'ORDERED'}");
+        query("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:1,name:'a'},{id:2,name:'b'},{id:3,name:'c'}]}");
+        query("{type:'UPDATE_DATA',database:'db',table:'people',where:{column:'id',value:2},updates:[{name:'name',value:'B',type:'TEXT'}]}");
+
+        TTable table = restart();
+        assertEquals(3, table.getRowCount());
+        assertEquals("B", table.getValue(1, 1));
+        assertArrayEquals(new int[]{2}, table.getIndex(0).find(3));
+    }
+
+    @Test
+    void replaysDeletionsInOrder() {
+        TTable table = TestData.createPeople(TestData.start(directory));
+        query("{type:'CREATE_INDEX',database:'db',table:'people',column:'id',index:'ORDERED'}");
+        query("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:0},{id:1},{id:2},{id:3},{id:4}]}");
+        // Each position counts the rows left by the deletions before it, so this deletes the rows 1, 2 and 4
+        DataManager dataManager = DataManager.getInstance();
+        synchronized (table) {
+            dataManager.logChange(table, WalRecord.Operation.DELETE, 1, null);
+            dataManager.logChange(table, WalRecord.Operation.DELETE, 1, null);
+            dataManager.logChange(table, WalRecord.Operation.DELETE, 2, null);
+        }
+
+        table = restart();
+        assertEquals(2, table.getRowCount());
+        assertEquals(0, table.getValue(0, 0));
+        assertEquals(3, table.getValue(1, 0));
+        assertArrayEquals(new int[]{1}, table.getIndex(0).find(3));
+        assertArrayEquals(new int[0], table.getIndex(0).find(4));
+    }
+
+    @Test
+    void skipsChangesContainedInSnapshot() {
+        DataManager dataManager = TestData.start(directory);
+        TTable table = TestData.createPeople(dataManager);
+        query("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:1,name:'a'}]}");
+        dataManager.save(table);
+        query("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:2,name:'b'}]}");
+
+        table = restart();
+        assertEquals(2, table.getRowCount());
+        assertEquals(2, table.getValue(1, 0));
+    }
+
+    @Test
+    void keepsTableWithoutLoggedChanges() {
+        TestData.createPeople(TestData.start(directory));
+        TTable table = restart();
+        assertEquals(0, table.getRowCount());
+        assertEquals(2, table.getColumns().size());
+    }
+
+    private TTable restart() {
+        return TestData.start(directory).getDatabase("db").getTable("people");
+    }
+
+    private static void query(String query) {
+        assertTrue(QueryParser.parseQuery(query).contains("\"SUCCESS\""), query);
+    }
+}
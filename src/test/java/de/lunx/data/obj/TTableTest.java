@@ -0,0 +1,90 @@
+package de.lunx.data.obj;
+
+import de.lunx.data.index.IndexType;
+import de.lunx.data.index.OrderedIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TTableTest {
+
+    @Test
+    void maintainsIndexesOnChanges() {
+        TTable table = table();
+        for (int i = 0; i < 5; i++) table.addRow(new Object[]{i % 2, "n" + i});
+        table.createIndex("id", IndexType.HASH);
+        table.createIndex("name", IndexType.ORDERED);
+        assertArrayEquals(new int[]{0, 2, 4}, table.getIndex(0).find(0));
+
+        table.setRow(2, new Object[]{1, "changed"});
+        assertArrayEquals(new int[]{0, 4}, table.getIndex(0).find(0));
+        assertArrayEquals(new int[]{1, 2, 3}, table.getIndex(0).find(1));
+        assertArrayEquals(new int[0], table.getIndex(1).find("n2"));
+        assertArrayEquals(new int[]{2}, table.getIndex(1).find("changed"));
+
+        table.addRow(new Object[]{0, "n5"});
+        assertArrayEquals(new int[]{0, 4, 5}, table.getIndex(0).find(0));
+
+        table.truncate();
+        assertArrayEquals(new int[0], table.getIndex(0).find(0));
+    }
+
+    @Test
+    void deletesRowsInOrder() {
+        TTable table = table();
+        for (int i = 0; i < 6; i++) table.addRow(new Object[]{i, "n" + i});
+        table.createIndex("id", IndexType.ORDERED);
+        // Every position counts the rows left by the deletions before it, positions past the end are ignored
+        table.deleteRows(new int[]{4, 0, 0, 9});
+        assertEquals(3, table.getRowCount());
+        assertEquals(List.of(2, 3, 5), List.of(table.getValue(0, 0), table.getValue(1, 0), table.getValue(2, 0)));
+        assertArrayEquals(new int[]{2}, table.getIndex(0).find(5));
+        assertArrayEquals(new int[]{0, 1, 2}, ((OrderedIndex) table.getIndex(0)).ordered(false, null).toArray());
+    }
+
+    @Test
+    void deletesRowsLikeOneAtATime() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            TTable table = table();
+            List<Object[]> expected = new ArrayList<>();
+            int rows = random.nextInt(50);
+            for (int i = 0; i < rows; i++) {
+                Object[] values = {random.nextInt(5) == 0 ? null : random.nextInt(8), "n" + i};
+                table.addRow(values.clone());
+                expected.add(values);
+            }
+            table.createIndex("id", IndexType.ORDERED);
+            table.createIndex("name", IndexType.HASH);
+            int[] deleted = new int[random.nextInt(rows + 3)];
+            for (int i = 0; i < deleted.length; i++) {
+                deleted[i] = random.nextInt(rows + 2);
+                if (deleted[i] < expected.size()) expected.remove(deleted[i]);
+            }
+
+            table.deleteRows(deleted);
+            assertEquals(expected.size(), table.getRowCount());
+            for (int row = 0; row < expected.size(); row++) {
+                Object[] values = expected.get(row);
+                assertArrayEquals(values, table.getRow(row).getValues());
+                assertArrayEquals(new int[]{row}, table.getIndex(1).find(values[1]));
+                int[] same = table.getIndex(0).find(values[0]);
+                assertEquals(expected.stream().filter(v -> Objects.equals(v[0], values[0])).count(), same.length);
+                assertTrue(Arrays.binarySearch(same, row) >= 0);
+            }
+        }
+    }
+
+    private static TTable table() {
+        TTable table = new TTable("people", "db");
+        table.addColumn(new TColumn(table, "id", TColumnType.INTEGER));
+        table.addColumn(new TColumn(table, "name", TColumnType.TEXT));
+        return table;
+    }
+}
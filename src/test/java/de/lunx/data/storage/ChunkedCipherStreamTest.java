@@ -0,0 +1,102 @@
+package de.lunx.data.storage;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedCipherStreamTest {
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+    private static final int CHUNK_SIZE = 1024;
+    private static final int HEADER_LENGTH = 4 + 4 + 1 + ChunkedCipherOutputStream.NONCE_PREFIX_LENGTH;
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        byte[] plain = randomBytes(5 * CHUNK_SIZE + 17);
+        for (Compression compression : Compression.values()) {
+            assertArrayEquals(plain, decrypt(encrypt(plain, compression)));
+        }
+    }
+
+    @Test
+    void readsCompressedChunks() throws IOException {
+        byte[] plain = new byte[3 * CHUNK_SIZE];
+        Arrays.fill(plain, (byte) 'a');
+        byte[] encrypted = encrypt(plain, Compression.FAST);
+        assertTrue(encrypted.length < plain.length);
+        assertArrayEquals(plain, decrypt(encrypted));
+    }
+
+    @Test
+    void rejectsChangedCiphertext() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE), Compression.NONE);
+        encrypted[encrypted.length - 20] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(encrypted));
+    }
+
+    @Test
+    void rejectsChangedFlags() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(2 * CHUNK_SIZE), Compression.NONE);
+        // Marking the first chunk as the final one would silently drop the rest of the stream
+        encrypted[HEADER_LENGTH + 4] |= ChunkedCipherOutputStream.FLAG_FINAL;
+        assertThrows(IOException.class, () -> decrypt(encrypted));
+    }
+
+    @Test
+    void rejectsTruncatedStream() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE), Compression.NONE);
+        int chunkLength = 4 + 1 + CHUNK_SIZE + ChunkedCipherOutputStream.TAG_BITS / 8;
+        byte[] truncated = Arrays.copyOf(encrypted, HEADER_LENGTH + 2 * chunkLength);
+        assertThrows(IOException.class, () -> decrypt(truncated));
+    }
+
+    @Test
+    void rejectsReorderedChunks() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(3 * CHUNK_SIZE), Compression.NONE);
+        int chunkLength = 4 + 1 + CHUNK_SIZE + ChunkedCipherOutputStream.TAG_BITS / 8;
+        byte[] first = Arrays.copyOfRange(encrypted, HEADER_LENGTH, HEADER_LENGTH + chunkLength);
+        System.arraycopy(encrypted, HEADER_LENGTH + chunkLength, encrypted, HEADER_LENGTH, chunkLength);
+        System.arraycopy(first, 0, encrypted, HEADER_LENGTH + chunkLength, chunkLength);
+        assertThrows(IOException.class, () -> decrypt(encrypted));
+    }
+
+    @Test
+    void rejectsOtherKey() throws IOException {
+        byte[] encrypted = encrypt(randomBytes(100), Compression.NONE);
+        byte[] other = new byte[32];
+        other[0] = 1;
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = new ChunkedCipherInputStream(new ByteArrayInputStream(encrypted), new SecretKeySpec(other, "AES"))) {
+                in.readAllBytes();
+            }
+        });
+    }
+
+    private static byte[] encrypt(byte[] plain, Compression compression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChunkedCipherOutputStream out = new ChunkedCipherOutputStream(bytes, KEY, compression, CHUNK_SIZE)) {
+            out.write(plain);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] decrypt(byte[] encrypted) throws IOException {
+        try (InputStream in = new ChunkedCipherInputStream(new ByteArrayInputStream(encrypted), KEY)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,103 @@
+package de.lunx.data.storage;
+
+import de.lunx.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    private static final UUID TABLE = UUID.randomUUID();
+
+    @TempDir
+    File directory;
+
+    @BeforeEach
+    void setUp() {
+        TestData.start(directory);
+    }
+
+    @Test
+    void replaysRecordsAfterReopening() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 1024 * 1024)) {
+            log.append(insert(1, "a"));
+            log.append(List.of(insert(2, "b"), new WalRecord(WalRecord.Operation.DELETE, TABLE, 3, 0, null)));
+            log.sync();
+        }
+        List<WalRecord> records = replay(0);
+        assertEquals(3, records.size());
+        assertEquals(Map.of("name", "a"), records.get(0).data());
+        assertEquals(2, records.get(1).version());
+        assertEquals(WalRecord.Operation.DELETE, records.get(2).operation());
+        assertNull(records.get(2).data());
+    }
+
+    @Test
+    void discardsTornRecordAtTheEnd() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 1024 * 1024)) {
+            log.append(insert(1, "a"));
+        }
+        // A crash in the middle of a write leaves an incomplete record behind
+        try (FileOutputStream out = new FileOutputStream(segmentFile(1), true)) {
+            out.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        }
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 1024 * 1024)) {
+            assertEquals(1, log.replay(0, record -> {
+            }));
+            log.append(insert(2, "b"));
+        }
+        List<WalRecord> records = replay(0);
+        assertEquals(2, records.size());
+        assertEquals(Map.of("name", "b"), records.get(1).data());
+    }
+
+    @Test
+    void skipsSegmentsBeforeCheckpoint() throws IOException {
+        long segment;
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 1024 * 1024)) {
+            log.append(insert(1, "a"));
+            segment = log.startSegment();
+            log.append(insert(2, "b"));
+            log.deleteSegmentsBefore(segment);
+        }
+        List<WalRecord> records = replay(segment);
+        assertEquals(1, records.size());
+        assertEquals(2, records.get(0).version());
+    }
+
+    @Test
+    void startsNewSegmentWhenFull() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 200)) {
+            for (int i = 1; i <= 20; i++) log.append(insert(i, "row" + i));
+        }
+        assertTrue(segmentFile(2).exists());
+        List<WalRecord> records = replay(0);
+        assertEquals(20, records.size());
+        for (int i = 0; i < records.size(); i++) assertEquals(i + 1, records.get(i).version());
+    }
+
+    private List<WalRecord> replay(long fromSegment) throws IOException {
+        List<WalRecord> records = new ArrayList<>();
+        try (WriteAheadLog log = new WriteAheadLog(directory, "db", 1024 * 1024)) {
+            log.replay(fromSegment, records::add);
+        }
+        return records;
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, String.format("db.%016d.wal", segment));
+    }
+
+    private static WalRecord insert(long version, String name) {
+        return new WalRecord(WalRecord.Operation.INSERT, TABLE, version, -1, Map.of("name", name));
+    }
+}
@@ -0,0 +1,92 @@
+package de.lunx.querying;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.lunx.TestData;
+import de.lunx.data.DataManager;
+import de.lunx.data.obj.TDatabase;
+import de.lunx.data.obj.TTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkLoaderTest {
+    @TempDir
+    File directory;
+
+    private TDatabase database;
+    private TTable table;
+
+    @BeforeEach
+    void setUp() {
+        DataManager dataManager = TestData.start(directory);
+        table = TestData.createPeople(dataManager);
+        database = dataManager.getDatabase("db");
+    }
+
+    @Test
+    void readsQuotedFields() throws IOException {
+        JsonObject result = load(BulkLoader.Format.CSV, """
+                name,id
+                plain,1
+                "with, comma",2
+                "with ""quotes\"\"\",3
+                ,4
+                """);
+        assertEquals("SUCCESS", result.get("result").getAsString());
+        assertEquals(4, result.get("loaded").getAsLong());
+        assertEquals("plain", table.getValue(0, 1));
+        assertEquals("with, comma", table.getValue(1, 1));
+        assertEquals("with \"quotes\"", table.getValue(2, 1));
+        assertNull(table.getValue(3, 1));
+        assertEquals(4, table.getValue(3, 0));
+    }
+
+    @Test
+    void readsLineBreaksInQuotedFields() throws IOException {
+        JsonObject result = load(BulkLoader.Format.CSV, "id,name\n1,\"first\nsecond\"\n2,next\n");
+        assertEquals(2, result.get("loaded").getAsLong());
+        assertEquals("first\nsecond", table.getValue(0, 1));
+        assertEquals("next", table.getValue(1, 1));
+    }
+
+    @Test
+    void rejectsInvalidRecords() throws IOException {
+        JsonObject result = load(BulkLoader.Format.CSV, "id,name\nx,a\n2\n3,c\n");
+        assertEquals(1, result.get("loaded").getAsLong());
+        assertEquals(2, result.get("rejected").getAsLong());
+        assertEquals(1, result.getAsJsonArray("rejections").get(0).getAsJsonObject().get("row").getAsLong());
+        assertEquals(3, table.getValue(0, 0));
+    }
+
+    @Test
+    void rejectsUnknownColumnInHeader() {
+        assertThrows(IllegalArgumentException.class, () -> load(BulkLoader.Format.CSV, "id,unknown\n1,a\n"));
+        assertEquals(0, table.getRowCount());
+    }
+
+    @Test
+    void readsJsonLines() throws IOException {
+        JsonObject result = load(BulkLoader.Format.NDJSON, "{\"id\":1,\"name\":\"a\"}\n\n{\"id\":\"x\"}\n{\"id\":2}\n");
+        assertEquals(2, result.get("loaded").getAsLong());
+        assertEquals(1, result.get("rejected").getAsLong());
+        assertEquals(2, table.getValue(1, 0));
+    }
+
+    /**
+     * @return The summary of the load
+     */
+    private JsonObject load(BulkLoader.Format format, String input) throws IOException {
+        StringWriter out = new StringWriter();
+        new BulkLoader(database, table, format, 2).load(new StringReader(input), out);
+        String[] lines = out.toString().split("\n");
+        return JsonParser.parseString(lines[lines.length - 1]).getAsJsonObject();
+    }
+}
@@ -0,0 +1,82 @@
+package de.lunx.querying;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.lunx.TestData;
+import de.lunx.data.DataManager;
+import de.lunx.data.obj.TTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+    private static final String QUERY = "{type:'GET_DATA',database:'db',table:'people'}";
+
+    @TempDir
+    File directory;
+
+    private DataManager dataManager;
+    private TTable table;
+
+    @BeforeEach
+    void setUp() {
+        dataManager = TestData.start(directory);
+        table = TestData.createPeople(dataManager);
+        QueryParser.parseQuery("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:1,name:'a'}]}");
+    }
+
+    @Test
+    void returnsCachedResultUntilTableChanges() throws IOException {
+        String first = query(QUERY);
+        long hits = stat("hits");
+        assertEquals(first, query(QUERY));
+        assertEquals(hits + 1, stat("hits"));
+
+        QueryParser.parseQuery("{type:'INSERT_DATA',database:'db',table:'people',rows:[{id:2,name:'b'}]}");
+        String changed = query(QUERY);
+        assertEquals(hits + 1, stat("hits"));
+        assertNotEquals(first, changed);
+        assertTrue(changed.contains("\"b\""));
+    }
+
+    @Test
+    void sharesResultOfEquivalentQueries() {
+        ResultCache cache = ResultCache.getInstance();
+        ResultCache.Key key = cache.key(json(QUERY));
+        assertNotNull(key);
+        assertEquals(key, cache.key(json("{table:'people',database:'db',type:'get_data'}")));
+        assertNotEquals(key, cache.key(json("{type:'GET_DATA',database:'db',table:'people',limit:1}")));
+    }
+
+    @Test
+    void skipsQueriesThatAreNotCached() {
+        ResultCache cache = ResultCache.getInstance();
+        assertNull(cache.key(json("{type:'INSERT_DATA',database:'db',table:'people',rows:[]}")));
+        assertNull(cache.key(json("{type:'GET_DATA',database:'db',table:'unknown'}")));
+        if (dataManager.unload(table)) {
+            assertNull(cache.key(json(QUERY)));
+            assertFalse(table.isResident());
+        }
+    }
+
+    private static String query(String query) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        QueryParser.writeQuery(query, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static long stat(String name) {
+        return ((Number) ResultCache.getInstance().stats().get(name)).longValue();
+    }
+
+    private static JsonObject json(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+}
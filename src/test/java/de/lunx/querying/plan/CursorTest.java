@@ -0,0 +1,44 @@
+package de.lunx.querying.plan;
+
+import de.lunx.data.JsonDate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorTest {
+
+    @Test
+    void decodesEncodedCursor() {
+        for (Object value : new Object[]{null, 2.5, true, 'c', "text", new JsonDate(new Date(1_700_000_000_000L))}) {
+            Cursor cursor = new Cursor("column", true, value, 42);
+            Cursor decoded = Cursor.decode(cursor.encode());
+            assertEquals("column", decoded.orderBy());
+            assertTrue(decoded.descending());
+            assertEquals(42, decoded.position());
+            if (value instanceof JsonDate date) assertEquals(date.getDate(), ((JsonDate) decoded.value()).getDate());
+            else assertEquals(value, decoded.value());
+        }
+    }
+
+    @Test
+    void decodesNumbersAsDecimals() {
+        assertEquals(7.0, Cursor.decode(new Cursor("id", false, 7, 1).encode()).value());
+    }
+
+    @Test
+    void keepsOnlyPositionWithoutOrder() {
+        Cursor decoded = Cursor.decode(new Cursor(null, true, "ignored", 5).encode());
+        assertNull(decoded.orderBy());
+        assertNull(decoded.value());
+        assertEquals(5, decoded.position());
+        assertTrue(decoded.continues(null, false));
+    }
+
+    @Test
+    void rejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("e30"));
+    }
+}
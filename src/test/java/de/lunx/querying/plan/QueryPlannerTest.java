@@ -0,0 +1,98 @@
+package de.lunx.querying.plan;
+
+import com.google.gson.JsonParser;
+import de.lunx.data.index.IndexType;
+import de.lunx.data.obj.TColumn;
+import de.lunx.data.obj.TColumnType;
+import de.lunx.data.obj.TTable;
+import de.lunx.querying.filter.Expression;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlannerTest {
+    private TTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new TTable("people", "db");
+        table.addColumn(new TColumn(table, "id", TColumnType.INTEGER));
+        table.addColumn(new TColumn(table, "name", TColumnType.TEXT));
+        // Every seventh row has no id, the others repeat the ids 0 to 9
+        for (int i = 0; i < 100; i++) table.addRow(new Object[]{i % 7 == 6 ? null : i % 10, "n" + i});
+    }
+
+    @Test
+    void looksUpSelectiveConditionsInIndex() {
+        table.createIndex("id", IndexType.HASH);
+        QueryPlan plan = new QueryPlanner(table).where(filter("{column:'id',value:3}"), List.of()).plan();
+        assertEquals(List.of("IndexLookup"), steps(plan));
+        assertArrayEquals(new int[]{3, 23, 33, 43, 53, 63, 73, 93}, plan.execute(table));
+    }
+
+    @Test
+    void scansWithoutIndex() {
+        QueryPlan plan = new QueryPlanner(table).where(filter("{column:'id',value:3}"), List.of()).plan();
+        assertEquals(List.of("Filter", "FullScan"), steps(plan));
+        assertArrayEquals(new int[]{3, 23, 33, 43, 53, 63, 73, 93}, plan.execute(table));
+    }
+
+    @Test
+    void sortsWithoutOrderedIndex() {
+        QueryPlan plan = new QueryPlanner(table).orderBy("id", false).limit(0, 3).plan();
+        assertEquals(List.of("Limit", "Sort", "FullScan"), steps(plan));
+        assertArrayEquals(new int[]{6, 13, 20}, plan.execute(table));
+    }
+
+    @Test
+    void readsOrderFromOrderedIndex() {
+        table.createIndex("id", IndexType.ORDERED);
+        QueryPlan plan = new QueryPlanner(table).orderBy("id", true).limit(0, 3).plan();
+        assertEquals(List.of("Limit", "IndexOrderScan"), steps(plan));
+        assertArrayEquals(new int[]{9, 19, 29}, plan.execute(table));
+    }
+
+    @Test
+    void pagesWithCursors() {
+        for (boolean ordered : new boolean[]{false, true}) {
+            if (ordered) table.createIndex("id", IndexType.ORDERED);
+            for (boolean descending : new boolean[]{false, true}) {
+                int[] all = new QueryPlanner(table).orderBy("id", descending).plan().execute(table);
+                List<Integer> paged = new ArrayList<>();
+                Cursor cursor = null;
+                do {
+                    QueryPlan plan = new QueryPlanner(table).orderBy("id", descending).limit(0, 8).after(cursor).plan();
+                    if (cursor != null) assertTrue(steps(plan).contains("Seek"));
+                    int[] rows = plan.execute(table);
+                    for (int row : rows) paged.add(row);
+                    cursor = plan.nextCursor(table, rows);
+                    if (cursor != null) cursor = Cursor.decode(cursor.encode());
+                } while (cursor != null);
+                assertEquals(Arrays.stream(all).boxed().toList(), paged, "ordered " + ordered + ", descending " + descending);
+            }
+        }
+    }
+
+    @Test
+    void continuesOnlyCursorsOfSameOrder() {
+        Cursor cursor = new Cursor("id", false, 3, 10);
+        assertTrue(new QueryPlanner(table).orderBy("id", false).continues(cursor));
+        assertFalse(new QueryPlanner(table).orderBy("id", true).continues(cursor));
+        assertFalse(new QueryPlanner(table).orderBy("name", false).continues(cursor));
+        assertFalse(new QueryPlanner(table).continues(cursor));
+        assertTrue(new QueryPlanner(table).continues(new Cursor(null, false, null, 10)));
+    }
+
+    private static Expression filter(String json) {
+        return Expression.parse(JsonParser.parseString(json));
+    }
+
+    private static List<String> steps(QueryPlan plan) {
+        return plan.explain().stream().map(step -> (String) step.get("step")).toList();
+    }
+}